@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+
+/**
+ * Поднимает приложение (по умолчанию без веб-слоя) поверх in-memory H2, заранее заполненной данными.
+ * Данные генерируются на стороне базы через SYSTEM_RANGE и детерминированы,
+ * поэтому прогоны на разных коммитах сравнимы между собой.
+ */
+public class BenchmarkDataset implements AutoCloseable {
+    private static final String USERNAME = "sa";
+    private static final String PASSWORD = "password";
+    private static final int COPY_BATCH_SIZE = 100_000;
+
+    private final String url;
+    private final JdbcTemplate seedTemplate;
+    private final ConfigurableApplicationContext context;
+
+    public final int films;
+    public final int users;
+    public final int likesPerUser;
+    public final int friendsPerUser;
+
+    public BenchmarkDataset(int films, int users, int likes, int friendsPerUser, String... properties) {
+        this(WebApplicationType.NONE, films, users, likes, friendsPerUser, properties);
+    }
+
+    public BenchmarkDataset(WebApplicationType webType, int films, int users, int likes, int friendsPerUser,
+                            String... properties) {
+        this.films = films;
+        this.users = users;
+        this.likesPerUser = Math.max(1, Math.min(likes / users, films));
+        this.friendsPerUser = friendsPerUser;
+        this.url = "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, USERNAME, PASSWORD);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        seedTemplate = new JdbcTemplate(dataSource);
+        seed();
+
+        String[] defaults = {
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + USERNAME,
+                "--spring.datasource.password=" + PASSWORD,
+                "--spring.sql.init.mode=never",
+                // сид пишет film_genres напрямую, копию в films.genre_ids строит приложение
+                "--filmorate.films.rebuild-genre-ids=true",
+                "--logging.level.root=WARN",
+                "--spring.main.banner-mode=off"
+        };
+        String[] args = Arrays.copyOf(defaults, defaults.length + properties.length);
+        System.arraycopy(properties, 0, args, defaults.length, properties.length);
+
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(webType)
+                .run(args);
+    }
+
+    public <T> T bean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Порт веб-сервера, если приложение поднято с веб-слоем и {@code --server.port=0}.
+     */
+    public int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return seedTemplate;
+    }
+
+    /**
+     * Переносит сгенерированные в базе данные в хранилища в памяти через их API. Нужен, когда
+     * приложение поднято с {@code --filmorate.storage.engine=memory}; id совпадают с id в базе,
+     * потому что и там, и там выдаются подряд с единицы.
+     */
+    public void copyToMemoryEngine() {
+        UserStorage userStorage = bean("inMemoryUserStorage", UserStorage.class);
+        FilmStorage filmStorage = bean("inMemoryFilmStorage", FilmStorage.class);
+
+        seedTemplate.query("SELECT * FROM users ORDER BY id", rs -> {
+            User user = new User();
+            user.setEmail(rs.getString("email"));
+            user.setLogin(rs.getString("login"));
+            user.setName(rs.getString("name"));
+            user.setBirthday(rs.getDate("birthday").toLocalDate());
+            userStorage.create(user);
+        });
+
+        Map<Long, List<Integer>> genres = new HashMap<>();
+        seedTemplate.query("SELECT film_id, genre_id FROM film_genres ORDER BY film_id, genre_id", rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+        });
+        seedTemplate.query("SELECT * FROM films ORDER BY id", rs -> {
+            Film film = new Film();
+            film.setName(rs.getString("name"));
+            film.setDescription(rs.getString("description"));
+            film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+            film.setDuration(rs.getLong("duration"));
+            film.setMpa(new Rating(rs.getInt("rating_id"), null));
+            genres.getOrDefault(rs.getLong("id"), List.of()).forEach(id -> film.getGenres().add(new Genre(id, null)));
+            filmStorage.create(film);
+        });
+
+        List<Like> likes = new ArrayList<>(COPY_BATCH_SIZE);
+        seedTemplate.query("SELECT film_id, user_id FROM likes", rs -> {
+            likes.add(new Like(rs.getLong("film_id"), rs.getLong("user_id")));
+
+            if (likes.size() == COPY_BATCH_SIZE) {
+                filmStorage.addLikes(likes);
+                likes.clear();
+            }
+        });
+        filmStorage.addLikes(likes);
+
+        List<Friendship> friendships = new ArrayList<>(COPY_BATCH_SIZE);
+        seedTemplate.query("SELECT user_id, friend_id FROM friendship", rs -> {
+            friendships.add(new Friendship(rs.getLong("user_id"), rs.getLong("friend_id")));
+
+            if (friendships.size() == COPY_BATCH_SIZE) {
+                userStorage.addFriends(friendships);
+                friendships.clear();
+            }
+        });
+        userStorage.addFriends(friendships);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        seedTemplate.execute("SHUTDOWN");
+    }
+
+    private void seed() {
+        seedTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'User ' || x, DATEADD('DAY', -MOD(x, 20000), DATE '2005-01-01') " +
+                "FROM SYSTEM_RANGE(1, ?)", users);
+
+        seedTemplate.update("INSERT INTO films (name, description, release_date, duration, rating_id) " +
+                "SELECT 'Film ' || x, 'Description of film ' || x, DATEADD('DAY', -MOD(x * 7, 36500), DATE '2024-01-01'), " +
+                "60 + MOD(x, 120), MOD(x, 5) + 1 " +
+                "FROM SYSTEM_RANGE(1, ?)", films);
+
+        seedTemplate.update("INSERT INTO film_genres (film_id, genre_id) " +
+                "SELECT x, MOD(x, 6) + 1 FROM SYSTEM_RANGE(1, ?) " +
+                "UNION ALL SELECT x, MOD(x + 3, 6) + 1 FROM SYSTEM_RANGE(1, ?) WHERE MOD(x, 2) = 0", films, films);
+
+        // r * stride < films, поэтому фильмы одного пользователя не повторяются
+        int stride = films / Math.max(likesPerUser, 1);
+        // лайки равномерно размазаны по последней неделе, чтобы окна трендов были заполнены
+        seedTemplate.update("INSERT INTO likes (film_id, user_id, created_at) " +
+                "SELECT MOD(u.x * 31 + r.x * ?, ?) + 1, u.x, " +
+                "DATEADD('MINUTE', -MOD(u.x * 7 + r.x * 13, 10080), CURRENT_TIMESTAMP) " +
+                "FROM SYSTEM_RANGE(1, ?) u CROSS JOIN SYSTEM_RANGE(0, ?) r",
+                Math.max(stride, 1), films, users, likesPerUser - 1);
+
+        seedTemplate.update("INSERT INTO friendship (user_id, friend_id) " +
+                "SELECT u.x, MOD(u.x - 1 + k.x * k.x + k.x, ?) + 1 " +
+                "FROM SYSTEM_RANGE(1, ?) u CROSS JOIN SYSTEM_RANGE(1, ?) k",
+                users, users, friendsPerUser);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Общий для бенчмарков набор данных. Объёмы можно переопределить из командной строки,
+ * например {@code -p films=10000 -p likes=100000}. Параметр {@code engine} выбирает
+ * хранилища: {@code db} — в базе, {@code memory} — в памяти (данные переносятся туда из базы).
+ * Параметр {@code journal} включает журнал изменений: {@code off}, {@code async} — без сброса
+ * на диск, {@code fsync} — с групповым сбросом; изменения тогда идут через журналирующие хранилища.
+ */
+@State(Scope.Benchmark)
+public class DatasetState {
+    @Param("100000")
+    public int films;
+
+    @Param("50000")
+    public int users;
+
+    @Param("1000000")
+    public int likes;
+
+    @Param("20")
+    public int friendsPerUser;
+
+    @Param("db")
+    public String engine;
+
+    @Param("off")
+    public String journal;
+
+    public BenchmarkDataset dataset;
+    private Path snapshot;
+    private Path journalDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<String> args = new ArrayList<>();
+
+        if (isMemory()) {
+            snapshot = Files.createTempFile("filmorate-benchmark", ".snapshot");
+            Files.delete(snapshot);
+            args.add("--filmorate.storage.engine=memory");
+            args.add("--filmorate.storage.memory.snapshot-interval=0");
+            args.add("--filmorate.storage.memory.snapshot-path=" + snapshot);
+        }
+        if (isJournaled()) {
+            journalDirectory = Files.createTempDirectory("filmorate-journal");
+            args.add("--filmorate.journal.enabled=true");
+            args.add("--filmorate.journal.fsync=" + "fsync".equals(journal));
+            args.add("--filmorate.journal.directory=" + journalDirectory);
+        }
+
+        dataset = new BenchmarkDataset(films, users, likes, friendsPerUser, args.toArray(String[]::new));
+        if (isMemory()) {
+            dataset.copyToMemoryEngine();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataset.close();
+
+        if (snapshot != null) {
+            Files.deleteIfExists(snapshot);
+        }
+        if (journalDirectory != null) {
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public FilmStorage filmStorage() {
+        if (isJournaled()) {
+            return dataset.bean("journaledFilmStorage", FilmStorage.class);
+        }
+        return dataset.bean(isMemory() ? "inMemoryFilmStorage" : "filmDbStorage", FilmStorage.class);
+    }
+
+    public UserStorage userStorage() {
+        if (isJournaled()) {
+            return dataset.bean("journaledUserStorage", UserStorage.class);
+        }
+        return dataset.bean(isMemory() ? "inMemoryUserStorage" : "userDbStorage", UserStorage.class);
+    }
+
+    private boolean isJournaled() {
+        return !"off".equals(journal);
+    }
+
+    private boolean isMemory() {
+        return "memory".equals(engine);
+    }
+}
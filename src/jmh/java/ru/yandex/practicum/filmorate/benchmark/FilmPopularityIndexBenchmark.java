@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Топ фильмов с фильтрами по жанру и году на индексе в памяти без базы.
+ * Время запроса не должно расти вместе с каталогом: сравните результаты для разных {@code films}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmPopularityIndexBenchmark {
+    private static final int GENRES = 6;
+    private static final int FIRST_YEAR = 1925;
+    private static final int YEARS = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int films;
+
+    private FilmPopularityIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Long, Long> likes = new HashMap<>(films * 2);
+        Map<Long, FilmPopularityIndex.Attributes> attributes = new HashMap<>(films * 2);
+
+        for (long filmId = 1; filmId <= films; filmId++) {
+            likes.put(filmId, (long) random.nextInt(1000));
+            int genre = (int) (filmId % GENRES) + 1;
+            attributes.put(filmId, new FilmPopularityIndex.Attributes(FIRST_YEAR + (int) (filmId % YEARS),
+                    filmId % 2 == 0 ? Set.of(genre, (genre + 2) % GENRES + 1) : Set.of(genre)));
+        }
+
+        index = new FilmPopularityIndex();
+        index.rebuild(likes, attributes);
+    }
+
+    @Benchmark
+    public List<Long> getTop() {
+        return index.getTop(10);
+    }
+
+    @Benchmark
+    public List<Long> getTopByGenre() {
+        return index.getTop(10, randomGenre(), null);
+    }
+
+    @Benchmark
+    public List<Long> getTopByYear() {
+        return index.getTop(10, null, randomYear());
+    }
+
+    @Benchmark
+    public List<Long> getTopByGenreAndYear() {
+        return index.getTop(10, randomGenre(), randomYear());
+    }
+
+    @Benchmark
+    public void likeAdded() {
+        index.likeAdded(ThreadLocalRandom.current().nextLong(1, films + 1L));
+    }
+
+    private static int randomGenre() {
+        return ThreadLocalRandom.current().nextInt(1, GENRES + 1);
+    }
+
+    private static int randomYear() {
+        return FIRST_YEAR + ThreadLocalRandom.current().nextInt(YEARS);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmStorageBenchmark {
+    private FilmStorage filmStorage;
+    private int films;
+    private int users;
+
+    @Setup(Level.Trial)
+    public void setUp(DatasetState state) {
+        filmStorage = state.filmStorage();
+        films = state.films;
+        users = state.users;
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.getById(randomId(films));
+    }
+
+    @Benchmark
+    public Collection<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Collection<Film> findPage() {
+        return filmStorage.findPage(randomId(films), 100);
+    }
+
+    @Benchmark
+    public Collection<Film> getMostPopular() {
+        return filmStorage.getMostPopular(10, null, null);
+    }
+
+    @Benchmark
+    public Collection<Film> getTrending() {
+        return filmStorage.getTrending(Duration.ofHours(24), 10);
+    }
+
+    @Benchmark
+    public Collection<Film> getRecommendations() {
+        return filmStorage.getRecommendations(randomId(users), 10);
+    }
+
+    @Benchmark
+    public Collection<Film> search() {
+        return filmStorage.search("film " + randomId(films), EnumSet.allOf(FilmSearchField.class), 20);
+    }
+
+    @Benchmark
+    public void addLike(Blackhole blackhole) {
+        long filmId = randomId(films);
+        filmStorage.addLike(filmId, randomId(users));
+        blackhole.consume(filmId);
+    }
+
+    /**
+     * Повторные лайки одной пары из многих потоков: все упираются в одну и ту же строку.
+     */
+    @Benchmark
+    @Threads(16)
+    public void addLikeSamePair() {
+        filmStorage.addLike(1L, 1L);
+    }
+
+    @Benchmark
+    public Film create() {
+        return filmStorage.create(newFilm(null));
+    }
+
+    @Benchmark
+    public Film update() {
+        return filmStorage.update(newFilm(randomId(films)));
+    }
+
+    static long randomId(int max) {
+        return ThreadLocalRandom.current().nextLong(1, max + 1);
+    }
+
+    private static Film newFilm(Long id) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Benchmark film");
+        film.setDescription("Film created by benchmark");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100L);
+        film.setMpa(new Rating(3, "PG-13"));
+        film.getGenres().add(new Genre(1, "Комедия"));
+        film.getGenres().add(new Genre(2, "Драма"));
+        return film;
+    }
+}
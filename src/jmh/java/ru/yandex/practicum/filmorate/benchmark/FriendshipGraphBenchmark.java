@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.practicum.filmorate.benchmark.FilmStorageBenchmark.randomId;
+
+/**
+ * Подбор друзей по графу в памяти без базы: {@code users * friendsPerUser} рёбер
+ * (по умолчанию 1M) и отдельный пользователь с {@code hubDegree} друзьями,
+ * для которого срабатывает параллельный обход.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FriendshipGraphBenchmark {
+    private static final long HUB_ID = 0;
+
+    @Param("50000")
+    public int users;
+
+    @Param("20")
+    public int friendsPerUser;
+
+    @Param("5000")
+    public int hubDegree;
+
+    private FriendshipGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Long, long[]> friends = new HashMap<>();
+
+        for (long userId = 1; userId <= users; userId++) {
+            friends.put(userId, randomFriends(random, friendsPerUser));
+        }
+        friends.put(HUB_ID, randomFriends(random, hubDegree));
+
+        graph = new FriendshipGraph();
+        graph.rebuild(friends);
+    }
+
+    @Benchmark
+    public long[] suggestFriends() {
+        return graph.suggestFriends(randomId(users), 10);
+    }
+
+    @Benchmark
+    public long[] suggestFriendsHighDegree() {
+        return graph.suggestFriends(HUB_ID, 10);
+    }
+
+    @Benchmark
+    public long[] getCommonFriends() {
+        long userId = randomId(users);
+        return graph.getCommonFriends(userId, userId % users + 1);
+    }
+
+    private long[] randomFriends(ThreadLocalRandom random, int count) {
+        return random.longs(count, 1, users + 1L).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.WebApplicationType;
+import ru.yandex.practicum.filmorate.storage.dao.BulkheadDataSource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный прогон по HTTP: поднимает приложение с веб-слоем сначала на платформенных,
+ * затем на виртуальных потоках и гоняет {@code /films/popular} и {@code /users/{id}/friends}
+ * заданным числом одновременных клиентов. Печатает пропускную способность, перцентили задержки
+ * и время ожидания соединения в ограничителе перед базой.
+ * <p>
+ * Аргументы (все необязательны): число клиентов, длительность замера в секундах,
+ * лимит одновременных соединений с базой.
+ */
+public class HttpLoadTest {
+    private static final int FILMS = 100_000;
+    private static final int USERS = 50_000;
+    private static final int LIKES = 1_000_000;
+    private static final int FRIENDS_PER_USER = 20;
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 20);
+        int maxConcurrent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.printf("Клиентов: %d, замер: %d с, соединений с базой: %d, процессоров: %d%n",
+                clients, duration.toSeconds(), maxConcurrent, Runtime.getRuntime().availableProcessors());
+
+        for (boolean virtual : new boolean[]{false, true}) {
+            try (BenchmarkDataset dataset = new BenchmarkDataset(WebApplicationType.SERVLET,
+                    FILMS, USERS, LIKES, FRIENDS_PER_USER,
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + virtual,
+                    "--filmorate.datasource.bulkhead.max-concurrent=" + maxConcurrent)) {
+                run(virtual ? "virtual" : "platform", dataset, clients, duration);
+            }
+        }
+    }
+
+    private static void run(String mode, BenchmarkDataset dataset, int clients, Duration duration) throws Exception {
+        String base = "http://localhost:" + dataset.port();
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        drive(client, base, dataset.users, clients, WARMUP);
+        Timer wait = dataset.bean(MeterRegistry.class).find(BulkheadDataSource.WAIT_TIMER).timer();
+        double waitBefore = wait != null ? wait.totalTime(TimeUnit.MILLISECONDS) : 0;
+        long waitCountBefore = wait != null ? wait.count() : 0;
+
+        Result result = drive(client, base, dataset.users, clients, duration);
+
+        long[] latencies = result.latencies();
+        Arrays.sort(latencies);
+        double waitAvg = wait != null && wait.count() > waitCountBefore
+                ? (wait.totalTime(TimeUnit.MILLISECONDS) - waitBefore) / (wait.count() - waitCountBefore) : 0;
+
+        System.out.printf("%-8s запросов: %7d, ошибок: %5d, rps: %8.1f, p50: %7.2f мс, p99: %8.2f мс, "
+                        + "ожидание соединения: %.3f мс%n",
+                mode, latencies.length, result.errors(), latencies.length / (double) duration.toSeconds(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), waitAvg);
+    }
+
+    private static Result drive(HttpClient client, String base, int users, int clients, Duration duration)
+            throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Result>> futures = new ArrayList<>(clients);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    LongList latencies = new LongList();
+                    int errors = 0;
+                    boolean popular = random.nextBoolean();
+
+                    while (System.nanoTime() < deadline) {
+                        String path = popular ? "/films/popular?count=10"
+                                : "/users/" + (1 + random.nextInt(users)) + "/friends";
+                        popular = !popular;
+
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(
+                                    HttpRequest.newBuilder(URI.create(base + path)).GET().build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors++;
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors++;
+                            continue;
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    }
+                    return new Result(latencies.toArray(), errors);
+                }));
+            }
+        }
+
+        LongList all = new LongList();
+        int errors = 0;
+        for (Future<Result> future : futures) {
+            Result result = future.get();
+            for (long latency : result.latencies()) {
+                all.add(latency);
+            }
+            errors += result.errors();
+        }
+        return new Result(all.toArray(), errors);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Result(long[] latencies, int errors) {
+    }
+
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
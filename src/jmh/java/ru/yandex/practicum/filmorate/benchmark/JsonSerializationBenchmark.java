@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.controller.json.FilmorateJsonModule;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация страницы фильмов и пользователей в JSON без базы: {@code mapper=default} —
+ * {@code ObjectMapper} с настройками Spring Boot, {@code fast} — он же с {@link FilmorateJsonModule}.
+ * Вывод пишется в один и тот же буфер, чтобы мерить только сериализацию.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"default", "fast"})
+    public String mapper;
+
+    @Param("100")
+    public int size;
+
+    private ObjectWriter writer;
+    private List<Film> films;
+    private List<User> users;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        if ("fast".equals(mapper)) {
+            objectMapper.registerModule(new FilmorateJsonModule());
+        }
+        writer = objectMapper.writer();
+
+        films = new ArrayList<>(size);
+        users = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            Film film = new Film();
+            film.setId(id);
+            film.setName("Фильм " + id);
+            film.setDescription("Описание фильма номер " + id + ", в меру длинное для каталога");
+            film.setReleaseDate(LocalDate.of(1950 + (int) (id % 70), 1 + (int) (id % 12), 1));
+            film.setDuration(90 + id % 60);
+            film.getGenres().add(new Genre(1 + (int) (id % 6), "Жанр"));
+            film.getGenres().add(new Genre(1 + (int) ((id + 3) % 6), "Другой жанр"));
+            film.setMpa(new Rating(1 + (int) (id % 5), "PG-13"));
+            films.add(film);
+
+            User user = new User();
+            user.setId(id);
+            user.setEmail("user" + id + "@mail.ru");
+            user.setLogin("user" + id);
+            user.setName("Пользователь " + id);
+            user.setBirthday(LocalDate.of(1980 + (int) (id % 30), 6, 15));
+            users.add(user);
+        }
+    }
+
+    @Benchmark
+    public int films() throws IOException {
+        out.reset();
+        writer.writeValue(out, films);
+        return out.size();
+    }
+
+    @Benchmark
+    public int users() throws IOException {
+        out.reset();
+        writer.writeValue(out, users);
+        return out.size();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.practicum.filmorate.benchmark.FilmStorageBenchmark.randomId;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserStorageBenchmark {
+    private UserStorage userStorage;
+    private int users;
+
+    @Setup(Level.Trial)
+    public void setUp(DatasetState state) {
+        userStorage = state.userStorage();
+        users = state.users;
+    }
+
+    @Benchmark
+    public User getById() {
+        return userStorage.getById(randomId(users));
+    }
+
+    @Benchmark
+    public Collection<User> getFriends() {
+        return userStorage.getFriends(randomId(users));
+    }
+
+    @Benchmark
+    public Collection<User> getCommonFriends() {
+        long userId = randomId(users);
+        return userStorage.getCommonFriends(userId, userId % users + 1);
+    }
+
+    @Benchmark
+    public Collection<User> getFriendSuggestions() {
+        return userStorage.getFriendSuggestions(randomId(users), 10);
+    }
+
+    @Benchmark
+    public Collection<User> findPage() {
+        return userStorage.findPage(randomId(users), 100);
+    }
+}
@@ -3,22 +3,59 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.controller.json.SparseFilms;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final FilmService filmService;
+    private final EntityVersions versions;
+    private final NdjsonWriter ndjsonWriter;
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjsonWriter.write(filmService::streamAll));
+    }
 
     @GetMapping
-    public Collection<Film> findAll() {
-        return filmService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(required = false) List<String> fields) {
+        Set<FilmField> fieldSet = FilmService.parseFields(fields);
+
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(body(filmService.findAll(fieldSet), fieldSet));
+        }
+
+        CursorPage<Film> page = filmService.findPage(after, limit, fieldSet);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(body(page.getItems(), fieldSet));
     }
 
     @PostMapping
@@ -31,8 +68,18 @@ public class FilmController {
         return filmService.update(newFilm);
     }
 
+    @GetMapping("/search")
+    public Collection<Film> search(@RequestParam String query,
+                                   @RequestParam(required = false) List<String> by,
+                                   @RequestParam(required = false) Integer limit) {
+        return filmService.search(query, by, limit);
+    }
+
     @GetMapping("/{id}")
-    public Film findById(@PathVariable Long id) {
+    public Film findById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(versions.filmTag(id))) {
+            return null;
+        }
         return filmService.getById(id);
     }
 
@@ -50,8 +97,38 @@ public class FilmController {
         return filmService.getById(id);
     }
 
+    @PostMapping("/likes/batch")
+    public List<BatchItemResult<Like>> addLikes(@RequestBody List<Like> likes) {
+        return filmService.addLikes(likes);
+    }
+
+    /**
+     * Без ETag: список меняется и без новых лайков, по мере того как старые выходят из окна.
+     */
+    @GetMapping("/trending")
+    public Collection<Film> findTrending(@RequestParam(defaultValue = "24h") String window,
+                                         @RequestParam(defaultValue = "10") int count) {
+        return filmService.getTrending(window, count);
+    }
+
     @GetMapping("/popular")
-    public Collection<Film> findPopular(@RequestParam(defaultValue = "10") int count) {
-        return filmService.getMostPopular(count);
+    public Object findPopular(@RequestParam(defaultValue = "10") int count,
+                              @RequestParam(required = false) Integer genreId,
+                              @RequestParam(required = false) Integer year,
+                              @RequestParam(required = false) List<String> fields,
+                              WebRequest request) {
+        Set<FilmField> fieldSet = FilmService.parseFields(fields);
+
+        if (request.checkNotModified(versions.filmListTag(count, genreId, year, fieldSet))) {
+            return null;
+        }
+        return body(filmService.getMostPopular(count, genreId, year, fieldSet), fieldSet);
+    }
+
+    /**
+     * Без {@code ?fields=} отдаёт фильмы как есть, иначе — только запрошенные поля.
+     */
+    private static Object body(Collection<Film> films, Set<FilmField> fields) {
+        return fields == FilmField.ALL ? films : new SparseFilms(films, fields);
     }
 }
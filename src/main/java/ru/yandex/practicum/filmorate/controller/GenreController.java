@@ -5,7 +5,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
 import java.util.Collection;
@@ -15,14 +17,21 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class GenreController {
     private final GenreService genreService;
+    private final EntityVersions versions;
 
     @GetMapping
-    public Collection<Genre> findAll() {
+    public Collection<Genre> findAll(WebRequest request) {
+        if (request.checkNotModified(versions.referenceTag())) {
+            return null;
+        }
         return genreService.findAll();
     }
 
     @GetMapping("/{id}")
-    public Genre getById(@PathVariable int id) {
+    public Genre getById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(versions.referenceTag())) {
+            return null;
+        }
         return genreService.getById(id);
     }
 }
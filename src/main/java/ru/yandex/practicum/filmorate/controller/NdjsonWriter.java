@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Пишет объекты в ответ по одному JSON-документу на строку (NDJSON)
+ * по мере того, как их отдаёт хранилище.
+ */
+@Component
+public class NdjsonWriter {
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectWriter writer;
+
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public <T> StreamingResponseBody write(Consumer<Consumer<T>> source) {
+        return out -> {
+            try {
+                source.accept(new Consumer<>() {
+                    private int written;
+
+                    @Override
+                    public void accept(T item) {
+                        writeLine(out, item, ++written);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+    }
+
+    private void writeLine(OutputStream out, Object item, int written) {
+        try {
+            writer.writeValue(out, item);
+            out.write('\n');
+
+            if (written == 1 || written % FLUSH_EVERY == 0) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
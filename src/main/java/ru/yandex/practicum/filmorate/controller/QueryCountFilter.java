@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.storage.dao.QueryCounter;
+
+import java.io.IOException;
+
+/**
+ * Считает SQL-запросы, выполненные при обработке HTTP-запроса, и пишет их число
+ * в гистограмму {@value #QUERIES_SUMMARY} с тегами метода и шаблона пути.
+ * Запросы потоковых (NDJSON) ответов выполняются в другом потоке и сюда не попадают.
+ */
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+    public static final String QUERIES_SUMMARY = "filmorate.http.queries";
+
+    private final MeterRegistry registry;
+
+    public QueryCountFilter(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry.getIfAvailable(SimpleMeterRegistry::new);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCounter.start();
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int queries = QueryCounter.stop();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+
+            DistributionSummary.builder(QUERIES_SUMMARY)
+                    .description("Число SQL-запросов на один HTTP-запрос")
+                    .tag("method", request.getMethod())
+                    .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(queries);
+        }
+    }
+}
@@ -5,7 +5,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
 import ru.yandex.practicum.filmorate.service.RatingService;
 
 import java.util.Collection;
@@ -15,14 +17,21 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class RatingController {
     private final RatingService ratingService;
+    private final EntityVersions versions;
 
     @GetMapping
-    public Collection<Rating> findAll() {
+    public Collection<Rating> findAll(WebRequest request) {
+        if (request.checkNotModified(versions.referenceTag())) {
+            return null;
+        }
         return ratingService.findAll();
     }
 
     @GetMapping("/{id}")
-    public Rating getById(@PathVariable int id) {
+    public Rating getById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(versions.referenceTag())) {
+            return null;
+        }
         return ratingService.getById(id);
     }
 }
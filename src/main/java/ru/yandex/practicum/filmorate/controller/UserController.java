@@ -3,11 +3,24 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.controller.json.SparseUsers;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -15,10 +28,33 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final EntityVersions versions;
+    private final NdjsonWriter ndjsonWriter;
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjsonWriter.write(userService::streamAll));
+    }
 
     @GetMapping
-    public Collection<User> findAll() {
-        return userService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(required = false) List<String> fields) {
+        Set<UserField> fieldSet = UserService.parseFields(fields);
+
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(body(userService.findAll(fieldSet), fieldSet));
+        }
+
+        CursorPage<User> page = userService.findPage(after, limit, fieldSet);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNextCursor() != null) {
+            response.header(FilmController.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(body(page.getItems(), fieldSet));
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -28,10 +64,35 @@ public class UserController {
         return userService.getById(id);
     }
 
+    @PostMapping("/friends/batch")
+    public List<BatchItemResult<Friendship>> addFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships);
+    }
+
     @GetMapping("/{id}/friends")
-    public Collection<User> findFriends(@PathVariable Long id) {
+    public Object findFriends(@PathVariable Long id,
+                              @RequestParam(required = false) List<String> fields,
+                              WebRequest request) {
+        Set<UserField> fieldSet = UserService.parseFields(fields);
+
+        if (request.checkNotModified(versions.userListTag(id, fieldSet))) {
+            return null;
+        }
+
         log.info("Запрос на получение списка друзей пользователя с ID: {}", id);
-        return userService.getFriends(id);
+        return body(userService.getFriends(id, fieldSet), fieldSet);
+    }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public Collection<User> getFriendSuggestions(@PathVariable Long id,
+                                                 @RequestParam(required = false) Integer limit) {
+        return userService.getFriendSuggestions(id, limit);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public Collection<Film> getRecommendations(@PathVariable Long id,
+                                               @RequestParam(required = false) Integer limit) {
+        return userService.getRecommendations(id, limit);
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
@@ -40,8 +101,15 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public Collection<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
-        return userService.getCommonFriends(id, otherId);
+    public Object getCommonFriends(@PathVariable Long id, @PathVariable Long otherId,
+                                   @RequestParam(required = false) List<String> fields,
+                                   WebRequest request) {
+        Set<UserField> fieldSet = UserService.parseFields(fields);
+
+        if (request.checkNotModified(versions.userListTag(id, otherId, fieldSet))) {
+            return null;
+        }
+        return body(userService.getCommonFriends(id, otherId, fieldSet), fieldSet);
     }
 
     @PostMapping
@@ -55,7 +123,17 @@ public class UserController {
     }
 
     @GetMapping("/{id}")
-    public User findById(@PathVariable Long id) {
+    public User findById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(versions.userTag(id))) {
+            return null;
+        }
         return userService.getById(id);
     }
+
+    /**
+     * Без {@code ?fields=} отдаёт пользователей как есть, иначе — только запрошенные поля.
+     */
+    private static Object body(Collection<User> users, Set<UserField> fields) {
+        return fields == UserField.ALL ? users : new SparseUsers(users, fields);
+    }
 }
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
+
+import java.io.IOException;
+import java.util.Set;
+
+final class FilmSerializer extends StdSerializer<Film> {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString RELEASE_DATE = new SerializedString("releaseDate");
+    private static final SerializedString DURATION = new SerializedString("duration");
+    private static final SerializedString GENRES = new SerializedString("genres");
+    private static final SerializedString MPA = new SerializedString("mpa");
+
+    FilmSerializer() {
+        super(Film.class);
+    }
+
+    @Override
+    public void serialize(Film film, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        write(film, gen, provider, FilmField.ALL);
+    }
+
+    /**
+     * Пишет только поля из {@code fields}, в том же порядке, что и полный фильм.
+     */
+    static void write(Film film, JsonGenerator gen, SerializerProvider provider, Set<FilmField> fields)
+            throws IOException {
+        gen.writeStartObject(film);
+        gen.writeFieldName(ID);
+        FilmorateJsonModule.writeNumber(gen, film.getId());
+        if (fields.contains(FilmField.NAME)) {
+            gen.writeFieldName(NAME);
+            gen.writeString(film.getName());
+        }
+        if (fields.contains(FilmField.DESCRIPTION)) {
+            gen.writeFieldName(DESCRIPTION);
+            gen.writeString(film.getDescription());
+        }
+        if (fields.contains(FilmField.RELEASE_DATE)) {
+            gen.writeFieldName(RELEASE_DATE);
+            FilmorateJsonModule.writeDate(gen, provider, film.getReleaseDate());
+        }
+        if (fields.contains(FilmField.DURATION)) {
+            gen.writeFieldName(DURATION);
+            FilmorateJsonModule.writeNumber(gen, film.getDuration());
+        }
+
+        if (fields.contains(FilmField.GENRES)) {
+            gen.writeFieldName(GENRES);
+            Set<Genre> genres = film.getGenres();
+            if (genres == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray(genres, genres.size());
+                for (Genre genre : genres) {
+                    GenreSerializer.write(genre, gen);
+                }
+                gen.writeEndArray();
+            }
+        }
+
+        if (fields.contains(FilmField.MPA)) {
+            gen.writeFieldName(MPA);
+            RatingSerializer.write(film.getMpa(), gen);
+        }
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Сериализаторы моделей без рефлексии: поля пишутся напрямую с заранее закодированными именами.
+ * Вывод побайтно совпадает с тем, что строит {@code ObjectMapper} Spring Boot по умолчанию:
+ * тот же порядок полей, {@code null} пишется явно, даты — строкой ISO. Spring Boot подключает
+ * модуль к своему {@code ObjectMapper} сам, как любой бин {@link com.fasterxml.jackson.databind.Module}.
+ * Чтение JSON модуль не затрагивает.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.json.fast-serializers", havingValue = "true", matchIfMissing = true)
+public class FilmorateJsonModule extends SimpleModule {
+    public FilmorateJsonModule() {
+        super("filmorate");
+        addSerializer(Film.class, new FilmSerializer());
+        addSerializer(User.class, new UserSerializer());
+        addSerializer(Genre.class, new GenreSerializer());
+        addSerializer(Rating.class, new RatingSerializer());
+    }
+
+    static void writeNumber(JsonGenerator gen, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    /**
+     * Если даты настроены писать числами, отдаёт дату стандартному сериализатору.
+     */
+    static void writeDate(JsonGenerator gen, SerializerProvider provider, LocalDate date) throws IOException {
+        if (date == null) {
+            gen.writeNull();
+        } else if (provider.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)) {
+            provider.defaultSerializeValue(date, gen);
+        } else {
+            gen.writeString(date.toString());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.io.IOException;
+
+final class GenreSerializer extends StdSerializer<Genre> {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+
+    GenreSerializer() {
+        super(Genre.class);
+    }
+
+    @Override
+    public void serialize(Genre genre, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        write(genre, gen);
+    }
+
+    static void write(Genre genre, JsonGenerator gen) throws IOException {
+        if (genre == null) {
+            gen.writeNull();
+            return;
+        }
+
+        gen.writeStartObject(genre);
+        gen.writeFieldName(ID);
+        gen.writeNumber(genre.getId());
+        gen.writeFieldName(NAME);
+        gen.writeString(genre.getName());
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.io.IOException;
+
+final class RatingSerializer extends StdSerializer<Rating> {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+
+    RatingSerializer() {
+        super(Rating.class);
+    }
+
+    @Override
+    public void serialize(Rating rating, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        write(rating, gen);
+    }
+
+    static void write(Rating rating, JsonGenerator gen) throws IOException {
+        if (rating == null) {
+            gen.writeNull();
+            return;
+        }
+
+        gen.writeStartObject(rating);
+        gen.writeFieldName(ID);
+        gen.writeNumber(rating.getId());
+        gen.writeFieldName(NAME);
+        gen.writeString(rating.getName());
+        gen.writeEndObject();
+    }
+}
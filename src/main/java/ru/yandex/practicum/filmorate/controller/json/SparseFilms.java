@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Список фильмов для ответа с {@code ?fields=}: пишется массивом, в каждом фильме только
+ * запрошенные поля. Сериализатор указан на самом типе, поэтому работает и без {@link FilmorateJsonModule}.
+ */
+@JsonSerialize(using = SparseFilms.Serializer.class)
+public record SparseFilms(Collection<Film> films, Set<FilmField> fields) {
+    static final class Serializer extends StdSerializer<SparseFilms> {
+        Serializer() {
+            super(SparseFilms.class);
+        }
+
+        @Override
+        public void serialize(SparseFilms value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(value, value.films.size());
+            for (Film film : value.films) {
+                FilmSerializer.write(film, gen, provider, value.fields);
+            }
+            gen.writeEndArray();
+        }
+    }
+}
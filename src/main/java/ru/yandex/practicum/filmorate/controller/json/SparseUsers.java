@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Список пользователей для ответа с {@code ?fields=}, см. {@link SparseFilms}.
+ */
+@JsonSerialize(using = SparseUsers.Serializer.class)
+public record SparseUsers(Collection<User> users, Set<UserField> fields) {
+    static final class Serializer extends StdSerializer<SparseUsers> {
+        Serializer() {
+            super(SparseUsers.class);
+        }
+
+        @Override
+        public void serialize(SparseUsers value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(value, value.users.size());
+            for (User user : value.users) {
+                UserSerializer.write(user, gen, provider, value.fields);
+            }
+            gen.writeEndArray();
+        }
+    }
+}
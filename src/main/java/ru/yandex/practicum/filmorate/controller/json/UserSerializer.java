@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
+
+import java.io.IOException;
+import java.util.Set;
+
+final class UserSerializer extends StdSerializer<User> {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString LOGIN = new SerializedString("login");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString BIRTHDAY = new SerializedString("birthday");
+
+    UserSerializer() {
+        super(User.class);
+    }
+
+    @Override
+    public void serialize(User user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        write(user, gen, provider, UserField.ALL);
+    }
+
+    /**
+     * Пишет только поля из {@code fields}, в том же порядке, что и полного пользователя.
+     */
+    static void write(User user, JsonGenerator gen, SerializerProvider provider, Set<UserField> fields)
+            throws IOException {
+        gen.writeStartObject(user);
+        gen.writeFieldName(ID);
+        FilmorateJsonModule.writeNumber(gen, user.getId());
+        if (fields.contains(UserField.EMAIL)) {
+            gen.writeFieldName(EMAIL);
+            gen.writeString(user.getEmail());
+        }
+        if (fields.contains(UserField.LOGIN)) {
+            gen.writeFieldName(LOGIN);
+            gen.writeString(user.getLogin());
+        }
+        if (fields.contains(UserField.NAME)) {
+            gen.writeFieldName(NAME);
+            gen.writeString(user.getName());
+        }
+        if (fields.contains(UserField.BIRTHDAY)) {
+            gen.writeFieldName(BIRTHDAY);
+            FilmorateJsonModule.writeDate(gen, provider, user.getBirthday());
+        }
+        gen.writeEndObject();
+    }
+}
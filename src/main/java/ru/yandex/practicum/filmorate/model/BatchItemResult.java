@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchItemResult<T> {
+    private T item;
+    private BatchStatus status;
+    private String description;
+
+    public static <T> BatchItemResult<T> of(T item, BatchStatus status) {
+        return new BatchItemResult<>(item, status, null);
+    }
+}
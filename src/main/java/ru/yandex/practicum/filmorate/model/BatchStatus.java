@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.model;
+
+public enum BatchStatus {
+    CREATED,
+    ALREADY_EXISTS,
+    NOT_FOUND,
+    INVALID
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private Long nextCursor;
+
+    /**
+     * Собирает страницу из выборки размером до limit + 1 элементов:
+     * лишний элемент означает, что за страницей есть продолжение.
+     */
+    public static <T> CursorPage<T> of(List<T> fetched, int limit, Function<T, Long> idGetter) {
+        if (fetched.size() <= limit) {
+            return new CursorPage<>(fetched, null);
+        }
+
+        List<T> items = fetched.subList(0, limit);
+        return new CursorPage<>(items, idGetter.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.index.ConcurrentLongMap;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии фильмов, пользователей и их списков для ETag. Изменённой сущности присваивается
+ * очередное значение общего счётчика, список получает новую версию при любом изменении
+ * своих сущностей. Версии живут в памяти, поэтому в тег входит время запуска:
+ * после перезапуска все теги меняются.
+ *
+ * <p>Один и тот же список отдаётся в разных представлениях — с разным {@code count}, фильтрами,
+ * набором полей или для разных пользователей, — поэтому в тег списка входят и параметры запроса:
+ * одинаковый тег означает одинаковое тело ответа.
+ *
+ * <p>Тег читается до обращения к хранилищу, а версия повышается после изменения,
+ * поэтому ответ может оказаться новее тега, но не старше.
+ */
+@Component
+public class EntityVersions {
+    private final ReferenceData referenceData;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong filmsVersion = new AtomicLong();
+    private final AtomicLong usersVersion = new AtomicLong();
+    private final ConcurrentLongMap<Long> films = new ConcurrentLongMap<>(1024);
+    private final ConcurrentLongMap<Long> users = new ConcurrentLongMap<>(1024);
+
+    public EntityVersions(ReferenceData referenceData) {
+        this.referenceData = referenceData;
+    }
+
+    public void filmChanged(long id) {
+        advance(films, filmsVersion, id);
+    }
+
+    public void userChanged(long id) {
+        advance(users, usersVersion, id);
+    }
+
+    /**
+     * Фильм включает жанры и рейтинг, поэтому в тег входит и версия справочников.
+     */
+    public String filmTag(long id) {
+        return tag(referenceData.getVersion(), versionOf(films, id));
+    }
+
+    public String filmListTag() {
+        return tag(referenceData.getVersion(), filmsVersion.get());
+    }
+
+    /**
+     * Тег списка фильмов, построенного по параметрам {@code params}.
+     */
+    public String filmListTag(Object... params) {
+        return variant(filmListTag(), params);
+    }
+
+    public String userTag(long id) {
+        return tag(0, versionOf(users, id));
+    }
+
+    public String userListTag() {
+        return tag(0, usersVersion.get());
+    }
+
+    /**
+     * Тег списка пользователей, построенного по параметрам {@code params}.
+     */
+    public String userListTag(Object... params) {
+        return variant(userListTag(), params);
+    }
+
+    public String referenceTag() {
+        return tag(referenceData.getVersion(), 0);
+    }
+
+    /**
+     * Версии только растут, даже если параллельные изменения дойдут сюда не в порядке счётчика.
+     */
+    private void advance(ConcurrentLongMap<Long> versions, AtomicLong listVersion, long id) {
+        long version = counter.incrementAndGet();
+
+        versions.compute(id, (key, current) -> current == null || current < version ? version : current);
+        listVersion.accumulateAndGet(version, Math::max);
+    }
+
+    private static long versionOf(ConcurrentLongMap<Long> versions, long id) {
+        Long version = versions.get(id);
+        return version != null ? version : 0;
+    }
+
+    private String tag(long referenceVersion, long version) {
+        return "\"" + epoch + "-" + referenceVersion + "-" + version + "\"";
+    }
+
+    /**
+     * Дописывает параметры к тегу: {@code null} — пустая строка, набор значений перечисления —
+     * битовая маска, остальное — {@code toString()} без символов, недопустимых в ETag.
+     */
+    private static String variant(String tag, Object[] params) {
+        StringBuilder variant = new StringBuilder(tag.length() + params.length * 8);
+        variant.append(tag, 0, tag.length() - 1);
+
+        for (Object param : params) {
+            variant.append('-');
+            if (param instanceof Set<?> set) {
+                long mask = 0;
+                for (Object value : set) {
+                    mask |= 1L << ((Enum<?>) value).ordinal();
+                }
+                variant.append(Long.toString(mask, 36));
+            } else if (param != null) {
+                variant.append(param.toString().replaceAll("[^0-9A-Za-z.]", "_"));
+            }
+        }
+        return variant.append('"').toString();
+    }
+}
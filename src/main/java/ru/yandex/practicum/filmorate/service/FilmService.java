@@ -1,62 +1,205 @@
 package ru.yandex.practicum.filmorate.service;
 
+import exception.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
 
-import java.util.Collection;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class FilmService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 100_000;
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    public static final int MAX_SEARCH_LIMIT = 100;
+    public static final int MAX_TRENDING_COUNT = 100;
+
     private final FilmStorage filmStorage;
-    private final UserStorage userStorage;
+    private final EntityVersions versions;
+    private final SingleFlight singleFlight;
+    private final FilmTrendingIndex trendingIndex;
 
-    public FilmService(@Qualifier("userDbStorage") UserStorage userStorage,
-                        @Qualifier("filmDbStorage") FilmStorage filmStorage) {
-        this.userStorage = userStorage;
+    public FilmService(@Qualifier("journaledFilmStorage") FilmStorage filmStorage, EntityVersions versions,
+                       SingleFlight singleFlight, FilmTrendingIndex trendingIndex) {
         this.filmStorage = filmStorage;
+        this.versions = versions;
+        this.singleFlight = singleFlight;
+        this.trendingIndex = trendingIndex;
     }
 
     public Collection<Film> findAll() {
         return filmStorage.findAll();
     }
 
+    public Collection<Film> findAll(Set<FilmField> fields) {
+        return filmStorage.findAll(fields);
+    }
+
+    public CursorPage<Film> findPage(Long after, Integer limit) {
+        return findPage(after, limit, FilmField.ALL);
+    }
+
+    public CursorPage<Film> findPage(Long after, Integer limit, Set<FilmField> fields) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        List<Film> films = new ArrayList<>(filmStorage.findPage(after != null ? after : 0, pageSize + 1, fields));
+        return CursorPage.of(films, pageSize, Film::getId);
+    }
+
+    public void streamAll(Consumer<Film> consumer) {
+        filmStorage.streamAll(consumer);
+    }
+
     public Film getById(Long id) {
-        return filmStorage.getById(id);
+        return singleFlight.execute("film.getById", Arrays.asList(id, versions.filmTag(id)),
+                () -> filmStorage.getById(id));
     }
 
     public Film create(Film film) {
-        return filmStorage.create(film);
+        Film created = filmStorage.create(film);
+        versions.filmChanged(created.getId());
+        return created;
     }
 
     public Film update(Film film) {
-        return filmStorage.update(film);
+        Film updated = filmStorage.update(film);
+        versions.filmChanged(updated.getId());
+        return updated;
     }
 
     public void addLike(Long filmId, Long userId) {
-        filmStorage.getById(filmId);
-
-        userStorage.getById(userId);
-
         filmStorage.addLike(filmId, userId);
+        versions.filmChanged(filmId);
         log.info("Пользователь c ID: {} поставил лайк фильму с ID: {}", userId, filmId);
     }
 
     public void removeLike(Long filmId, Long userId) {
-        filmStorage.getById(filmId);
-
-        userStorage.getById(userId);
-
         filmStorage.removeLike(filmId, userId);
+        versions.filmChanged(filmId);
         log.info("Пользователь {} удалил лайк у фильма {}", userId, filmId);
     }
 
-    public Collection<Film> getMostPopular(int count) {
-        log.info("Запрос топ-{} фильмов", count);
-        return filmStorage.getMostPopular(count);
+    public List<BatchItemResult<Like>> addLikes(List<Like> likes) {
+        if (likes.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Размер пачки не может превышать " + MAX_BATCH_SIZE);
+        }
+
+        List<BatchItemResult<Like>> results = filmStorage.addLikes(likes);
+        long created = 0;
+
+        for (BatchItemResult<Like> result : results) {
+            if (result.getStatus() == BatchStatus.CREATED) {
+                versions.filmChanged(result.getItem().getFilmId());
+                created++;
+            }
+        }
+        log.info("Загружена пачка из {} лайков, добавлено: {}", likes.size(), created);
+        return results;
+    }
+
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year) {
+        return getMostPopular(count, genreId, year, FilmField.ALL);
+    }
+
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        log.info("Запрос топ-{} фильмов, жанр: {}, год: {}", count, genreId, year);
+        return singleFlight.execute("film.getMostPopular",
+                Arrays.asList(count, genreId, year, fields, versions.filmListTag()),
+                () -> filmStorage.getMostPopular(count, genreId, year, fields));
+    }
+
+    /**
+     * Самые популярные фильмы за окно вида {@code 1h}, {@code 24h}, {@code 7d}; окно должно быть
+     * одним из {@code filmorate.trending.windows}.
+     */
+    public Collection<Film> getTrending(String window, int count) {
+        Duration duration;
+
+        try {
+            duration = DurationStyle.detectAndParse(window);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректное окно: " + window);
+        }
+        if (!trendingIndex.getWindows().contains(duration)) {
+            throw new ValidationException("Окно должно быть одним из: " + trendingIndex.getWindows().stream()
+                    .map(FilmService::formatWindow)
+                    .collect(Collectors.joining(", ")));
+        }
+        if (count <= 0 || count > MAX_TRENDING_COUNT) {
+            throw new ValidationException("Число фильмов должно быть от 1 до " + MAX_TRENDING_COUNT);
+        }
+
+        log.info("Запрос топ-{} фильмов за {}", count, window);
+        return filmStorage.getTrending(duration, count);
+    }
+
+    /**
+     * Разбирает {@code ?fields=}: без параметра — все поля, {@code id} добавляется всегда.
+     */
+    public static Set<FilmField> parseFields(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return FilmField.ALL;
+        }
+
+        Set<FilmField> fields = EnumSet.of(FilmField.ID);
+
+        for (String name : names) {
+            FilmField field = FilmField.fromJsonName(name.trim());
+
+            if (field == null) {
+                throw new ValidationException("Неизвестное поле фильма: " + name);
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private static String formatWindow(Duration window) {
+        if (window.toDaysPart() > 0 && window.toHoursPart() == 0 && window.toMinutesPart() == 0) {
+            return window.toDays() + "d";
+        }
+        return window.toMinutesPart() == 0 ? window.toHours() + "h" : window.toMinutes() + "m";
+    }
+
+    public Collection<Film> search(String query, List<String> by, Integer limit) {
+        int count = limit != null ? limit : DEFAULT_SEARCH_LIMIT;
+
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (count <= 0 || count > MAX_SEARCH_LIMIT) {
+            throw new ValidationException("Число результатов должно быть от 1 до " + MAX_SEARCH_LIMIT);
+        }
+
+        Set<FilmSearchField> fields = by == null || by.isEmpty()
+                ? EnumSet.allOf(FilmSearchField.class)
+                : EnumSet.noneOf(FilmSearchField.class);
+
+        for (String field : by != null ? by : List.<String>of()) {
+            switch (field.trim().toLowerCase(Locale.ROOT)) {
+                case "title" -> fields.add(FilmSearchField.TITLE);
+                case "description" -> fields.add(FilmSearchField.DESCRIPTION);
+                default -> throw new ValidationException("Неизвестное поле поиска: " + field);
+            }
+        }
+
+        log.info("Поиск фильмов по запросу \"{}\" в полях {}", query, fields);
+        return filmStorage.search(query, fields, count);
     }
 }
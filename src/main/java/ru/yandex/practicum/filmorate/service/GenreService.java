@@ -3,20 +3,20 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.storage.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
 
 import java.util.Collection;
 
 @Service
 @RequiredArgsConstructor
 public class GenreService {
-    private final GenreDbStorage genreDbStorage;
+    private final ReferenceData referenceData;
 
     public Collection<Genre> findAll() {
-        return genreDbStorage.findAll();
+        return referenceData.getGenres();
     }
 
     public Genre getById(int id) {
-        return genreDbStorage.getById(id);
+        return referenceData.getGenre(id);
     }
 }
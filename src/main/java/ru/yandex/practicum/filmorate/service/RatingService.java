@@ -3,20 +3,20 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Rating;
-import ru.yandex.practicum.filmorate.storage.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
 
 import java.util.Collection;
 
 @Service
 @RequiredArgsConstructor
 public class RatingService {
-    private final RatingDbStorage ratingDbStorage;
+    private final ReferenceData referenceData;
 
     public Collection<Rating> findAll() {
-        return ratingDbStorage.findAll();
+        return referenceData.getRatings();
     }
 
     public Rating getById(int id) {
-        return ratingDbStorage.getById(id);
+        return referenceData.getRating(id);
     }
 }
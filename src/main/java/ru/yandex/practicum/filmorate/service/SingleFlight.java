@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Склеивает одинаковые параллельные чтения: пока вызов с тем же ключом выполняется, новые вызовы
+ * не идут в хранилище, а ждут его результата или исключения. Запись о вызове удаляется до того,
+ * как результат отдаётся ожидающим, поэтому пришедший после завершения вызов выполняется заново
+ * и данные не старше, чем длится один вызов.
+ *
+ * <p>Сервисы добавляют в ключ версию из {@link EntityVersions}: после своего изменения вызывающий
+ * строит новый ключ и не присоединяется к чтению, начатому до этого изменения.
+ */
+@Component
+public class SingleFlight {
+    public static final String CALLS_COUNTER = "filmorate.singleflight.calls";
+    public static final String COALESCED_COUNTER = "filmorate.singleflight.coalesced";
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> calls = new ConcurrentHashMap<>();
+    private final Map<String, Counter> coalesced = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SingleFlight(ObjectProvider<MeterRegistry> registry,
+                        @Value("${filmorate.coalescing.enabled:true}") boolean enabled) {
+        this(registry.getIfAvailable(SimpleMeterRegistry::new), enabled);
+    }
+
+    public SingleFlight(MeterRegistry registry, boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, List<?> key, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        Key flightKey = new Key(operation, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, flight);
+
+        counter(calls, CALLS_COUNTER, "Число чтений, прошедших через склейку", operation).increment();
+        if (running != null) {
+            counter(coalesced, COALESCED_COUNTER, "Число чтений, дождавшихся чужого вызова", operation)
+                    .increment();
+            return (T) await(running);
+        }
+
+        try {
+            T result = call.get();
+            inFlight.remove(flightKey, flight);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(flightKey, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long getCallCount(String operation) {
+        Counter counter = calls.get(operation);
+        return counter != null ? (long) counter.count() : 0;
+    }
+
+    public long getCoalescedCount(String operation) {
+        Counter counter = coalesced.get(operation);
+        return counter != null ? (long) counter.count() : 0;
+    }
+
+    /**
+     * Исключение вызова пробрасывается каждому ожидающему как есть, без обёртки.
+     */
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private Counter counter(Map<String, Counter> counters, String name, String description, String operation) {
+        return counters.computeIfAbsent(operation, op -> Counter.builder(name)
+                .description(description)
+                .tag("operation", op)
+                .register(registry));
+    }
+
+    private record Key(String operation, List<?> args) {
+    }
+}
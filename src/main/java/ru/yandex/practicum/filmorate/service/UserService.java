@@ -1,32 +1,83 @@
 package ru.yandex.practicum.filmorate.service;
 
+import exception.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class UserService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 100_000;
+    public static final int DEFAULT_SUGGESTIONS = 10;
+    public static final int MAX_SUGGESTIONS = 100;
+
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final EntityVersions versions;
+    private final SingleFlight singleFlight;
 
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(@Qualifier("journaledUserStorage") UserStorage userStorage,
+                       @Qualifier("journaledFilmStorage") FilmStorage filmStorage,
+                       EntityVersions versions,
+                       SingleFlight singleFlight) {
         this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.versions = versions;
+        this.singleFlight = singleFlight;
     }
 
     public Collection<User> findAll() {
         return userStorage.findAll();
     }
 
+    public Collection<User> findAll(Set<UserField> fields) {
+        return userStorage.findAll(fields);
+    }
+
+    public CursorPage<User> findPage(Long after, Integer limit) {
+        return findPage(after, limit, UserField.ALL);
+    }
+
+    public CursorPage<User> findPage(Long after, Integer limit, Set<UserField> fields) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        List<User> users = new ArrayList<>(userStorage.findPage(after != null ? after : 0, pageSize + 1, fields));
+        return CursorPage.of(users, pageSize, User::getId);
+    }
+
+    public void streamAll(Consumer<User> consumer) {
+        userStorage.streamAll(consumer);
+    }
+
     public User create(User user) {
-        return userStorage.create(user);
+        User created = userStorage.create(user);
+        versions.userChanged(created.getId());
+        return created;
     }
 
     public User update(User user) {
-        return userStorage.update(user);
+        User updated = userStorage.update(user);
+        versions.userChanged(updated.getId());
+        return updated;
     }
 
     public User getById(Long id) {
@@ -37,26 +88,99 @@ public class UserService {
         userStorage.getById(userId);
         userStorage.getById(friendId);
         userStorage.addFriend(userId, friendId);
+        versions.userChanged(userId);
 
         log.info("Пользователь с ID {} добавил в друзья пользователя {}", userId, friendId);
     }
 
+    public List<BatchItemResult<Friendship>> addFriends(List<Friendship> friendships) {
+        if (friendships.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Размер пачки не может превышать " + MAX_BATCH_SIZE);
+        }
+
+        List<BatchItemResult<Friendship>> results = userStorage.addFriends(friendships);
+        long created = 0;
+
+        for (BatchItemResult<Friendship> result : results) {
+            if (result.getStatus() == BatchStatus.CREATED) {
+                versions.userChanged(result.getItem().getUserId());
+                created++;
+            }
+        }
+        log.info("Загружена пачка из {} заявок в друзья, добавлено: {}", friendships.size(), created);
+        return results;
+    }
+
     public void removeFriend(Long userId, Long friendId) {
         userStorage.getById(userId);
         userStorage.getById(friendId);
 
         userStorage.removeFriend(userId, friendId);
+        versions.userChanged(userId);
         log.info("Пользователь {} удалил пользователя {}", userId, friendId);
     }
 
     public Collection<User> getCommonFriends(Long userId, Long friendId) {
+        return getCommonFriends(userId, friendId, UserField.ALL);
+    }
+
+    public Collection<User> getCommonFriends(Long userId, Long friendId, Set<UserField> fields) {
         userStorage.getById(userId);
         userStorage.getById(friendId);
-        return userStorage.getCommonFriends(userId, friendId);
+        return userStorage.getCommonFriends(userId, friendId, fields);
     }
 
     public Collection<User> getFriends(Long userId) {
+        return getFriends(userId, UserField.ALL);
+    }
+
+    public Collection<User> getFriends(Long userId, Set<UserField> fields) {
+        return singleFlight.execute("user.getFriends", Arrays.asList(userId, fields, versions.userListTag()), () -> {
+            userStorage.getById(userId);
+            return userStorage.getFriends(userId, fields);
+        });
+    }
+
+    public Collection<User> getFriendSuggestions(Long userId, Integer limit) {
+        int count = limit != null ? limit : DEFAULT_SUGGESTIONS;
+
+        if (count <= 0 || count > MAX_SUGGESTIONS) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS);
+        }
+
+        userStorage.getById(userId);
+        return userStorage.getFriendSuggestions(userId, count);
+    }
+
+    public Collection<Film> getRecommendations(Long userId, Integer limit) {
+        int count = limit != null ? limit : DEFAULT_SUGGESTIONS;
+
+        if (count <= 0 || count > MAX_SUGGESTIONS) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS);
+        }
+
         userStorage.getById(userId);
-        return userStorage.getFriends(userId);
+        return filmStorage.getRecommendations(userId, count);
+    }
+
+    /**
+     * Разбирает {@code ?fields=}: без параметра — все поля, {@code id} добавляется всегда.
+     */
+    public static Set<UserField> parseFields(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return UserField.ALL;
+        }
+
+        Set<UserField> fields = EnumSet.of(UserField.ID);
+
+        for (String name : names) {
+            UserField field = UserField.fromJsonName(name.trim());
+
+            if (field == null) {
+                throw new ValidationException("Неизвестное поле пользователя: " + name);
+            }
+            fields.add(field);
+        }
+        return fields;
     }
 }
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Оборачивает {@link DataSource} приложения в {@link BulkheadDataSource}, если задан
+ * {@code filmorate.datasource.bulkhead.max-concurrent} больше нуля. Реестр метрик запрашивается
+ * лениво, при создании источника данных, чтобы не инициализировать его раньше времени.
+ */
+@Slf4j
+@Component
+public class DataSourceBulkheadPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<MeterRegistry> registry;
+    private final int maxConcurrent;
+    private final Duration acquireTimeout;
+
+    public DataSourceBulkheadPostProcessor(
+            ObjectProvider<MeterRegistry> registry,
+            @Value("${filmorate.datasource.bulkhead.max-concurrent:0}") int maxConcurrent,
+            @Value("${filmorate.datasource.bulkhead.acquire-timeout:30s}") Duration acquireTimeout) {
+        this.registry = registry;
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (maxConcurrent <= 0 || !(bean instanceof DataSource dataSource) || bean instanceof BulkheadDataSource) {
+            return bean;
+        }
+
+        log.info("Соединения с базой ограничены: не больше {} одновременно, ожидание до {}",
+                maxConcurrent, acquireTimeout);
+        return new BulkheadDataSource(dataSource, maxConcurrent, acquireTimeout,
+                registry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -2,57 +2,182 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import exception.NotFoundException;
 import exception.ValidationException;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Rating;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
+import ru.yandex.practicum.filmorate.storage.index.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
 
 import java.sql.*;
 import java.sql.Date;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final int BATCH_SIZE = 1000;
+    // время лайка задаёт приложение: по нему же выбирается корзина FilmTrendingIndex
+    static final String INSERT_LIKE_SQL = "INSERT INTO likes (film_id, user_id, created_at) SELECT ?, ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    // удаление возвращает время удалённого лайка, чтобы снять его из нужной корзины FilmTrendingIndex
+    private static final String REMOVE_LIKE_SQL = "SELECT created_at FROM OLD TABLE " +
+            "(DELETE FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String LIKED_AT_SQL = "SELECT created_at FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String FK_LIKES_FILM = "FK_LIKES_FILM";
+    private static final String FK_LIKES_USER = "FK_LIKES_USER";
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmLikesIndex likesIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmTrendingIndex trendingIndex;
+    private final ReferenceData referenceData;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final FilmGenreLoader genreLoader;
+    private final StorageMetrics metrics;
+    private final StripedLocks likeLocks = new StripedLocks();
+
+    @PostConstruct
+    public void loadIndexes() {
+        loadPopularity();
+        loadLikes();
+        loadSearch();
+        loadTrending();
+    }
+
+    public void loadPopularity() {
+        String sql = "SELECT f.id, f.release_date, COUNT(l.user_id) AS likes_count " +
+                "FROM films f " +
+                "LEFT JOIN likes l ON f.id = l.film_id " +
+                "GROUP BY f.id, f.release_date";
+        String genresSql = "SELECT film_id, genre_id FROM film_genres ORDER BY film_id, genre_id";
+        Map<Long, Long> likesByFilm = new HashMap<>();
+        Map<Long, Integer> yearByFilm = new HashMap<>();
+
+        metrics.run("film.loadPopularity", () -> jdbcTemplate.query(sql, rs -> {
+            long filmId = rs.getLong("id");
+            Date releaseDate = rs.getDate("release_date");
+
+            likesByFilm.put(filmId, rs.getLong("likes_count"));
+            if (releaseDate != null) {
+                yearByFilm.put(filmId, releaseDate.toLocalDate().getYear());
+            }
+        }));
+        Map<Long, long[]> genresByFilm = metrics.record("film.loadPopularityGenres", () ->
+                jdbcTemplate.query(genresSql, SqlHelper.adjacency("film_id", "genre_id")));
+
+        Map<Long, FilmPopularityIndex.Attributes> attributes = new HashMap<>(likesByFilm.size() * 2);
+        for (Long filmId : likesByFilm.keySet()) {
+            Set<Integer> genreIds = Arrays.stream(genresByFilm.getOrDefault(filmId, new long[0]))
+                    .mapToObj(id -> (int) id)
+                    .collect(Collectors.toUnmodifiableSet());
+            attributes.put(filmId, new FilmPopularityIndex.Attributes(yearByFilm.get(filmId), genreIds));
+        }
+        popularityIndex.rebuild(likesByFilm, attributes);
+    }
+
+    public void loadLikes() {
+        String sql = "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id";
+
+        likesIndex.rebuild(metrics.record("film.loadLikes", () ->
+                jdbcTemplate.query(sql, SqlHelper.adjacency("user_id", "film_id"))));
+    }
+
+    /**
+     * Читает только лайки за самое длинное окно; дальше индекс сдвигает окна сам.
+     */
+    public void loadTrending() {
+        String sql = "SELECT film_id, created_at FROM likes WHERE created_at >= ?";
+        long now = System.currentTimeMillis();
+        Timestamp since = new Timestamp(now - trendingIndex.getMaxWindow().toMillis());
+        Map<Long, List<Long>> likedAt = new HashMap<>();
+
+        metrics.run("film.loadTrending", () -> jdbcTemplate.query(sql, rs -> {
+            likedAt.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>())
+                    .add(rs.getTimestamp("created_at").getTime());
+        }, since));
+
+        Map<Long, long[]> likedAtByFilm = new HashMap<>(likedAt.size() * 2);
+        likedAt.forEach((filmId, times) ->
+                likedAtByFilm.put(filmId, times.stream().mapToLong(Long::longValue).toArray()));
+        trendingIndex.rebuild(likedAtByFilm, now);
+    }
+
+    public void loadSearch() {
+        String sql = "SELECT id, name, description FROM films ORDER BY id";
+
+        searchIndex.rebuild(metrics.record("film.loadSearch", () -> jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Film film = new Film();
+            film.setId(rs.getLong("id"));
+            film.setName(rs.getString("name"));
+            film.setDescription(rs.getString("description"));
+            return film;
+        })));
+    }
 
+    /**
+     * Строка фильма и его жанры в {@code film_genres} пишутся в одной транзакции вместе
+     * с копией id жанров в {@code films.genre_ids}, поэтому копия не расходится с таблицей.
+     */
     @Override
     public Film create(Film film) {
         validateMpaAndGenres(film);
 
-        String sql = "INSERT INTO films (name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO films (name, description, release_date, duration, rating_id, genre_ids) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
+        Integer[] genreIds = genreIds(film);
+        FilmPopularityIndex.Attributes attributes = popularityAttributes(film, genreIds);
 
         try {
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                ps.setString(1, film.getName());
-                ps.setString(2, film.getDescription());
-                ps.setDate(3, film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null);
-                ps.setLong(4, film.getDuration());
-
-                if (film.getMpa() != null && film.getMpa().getId() != 0) {
-                    ps.setInt(5, film.getMpa().getId());
-                } else {
-                    ps.setNull(5, Types.INTEGER);
-                }
-                return ps;
-            }, keyHolder);
+            transactionTemplate.executeWithoutResult(status -> {
+                metrics.record("film.create", () -> jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setDate(3, film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null);
+                    ps.setLong(4, film.getDuration());
+
+                    if (film.getMpa() != null && film.getMpa().getId() != 0) {
+                        ps.setInt(5, film.getMpa().getId());
+                    } else {
+                        ps.setNull(5, Types.INTEGER);
+                    }
+                    ps.setObject(6, genreIds);
+                    return ps;
+                }, keyHolder));
 
-            if (keyHolder.getKey() != null) {
-                film.setId(keyHolder.getKey().longValue());
-            }
+                if (keyHolder.getKey() != null) {
+                    film.setId(keyHolder.getKey().longValue());
+                }
+                saveGenres(film.getId(), genreIds);
+            });
 
-            saveGenres(film);
+            popularityIndex.register(film.getId(), attributes);
+            searchIndex.put(film);
             return getById(film.getId());
 
         } catch (DataIntegrityViolationException e) {
@@ -65,151 +190,426 @@ public class FilmDbStorage implements FilmStorage {
         getById(film.getId());
         validateMpaAndGenres(film);
 
-        String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? WHERE id = ?";
-        jdbcTemplate.update(sql,
-                film.getName(),
-                film.getDescription(),
-                film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null,
-                film.getDuration(),
-                film.getMpa() != null ? film.getMpa().getId() : null,
-                film.getId());
-
-        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", film.getId());
-        saveGenres(film);
+        String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ?, " +
+                "genre_ids = ? WHERE id = ?";
+        Integer[] genreIds = genreIds(film);
+        FilmPopularityIndex.Attributes attributes = popularityAttributes(film, genreIds);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            metrics.record("film.update", () -> jdbcTemplate.update(sql,
+                    film.getName(),
+                    film.getDescription(),
+                    film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null,
+                    film.getDuration(),
+                    film.getMpa() != null ? film.getMpa().getId() : null,
+                    genreIds,
+                    film.getId()));
+
+            metrics.record("film.deleteGenres", () ->
+                    jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", film.getId()));
+            saveGenres(film.getId(), genreIds);
+        });
+        popularityIndex.register(film.getId(), attributes);
+        searchIndex.put(film);
 
         return getById(film.getId());
     }
 
+    private static FilmPopularityIndex.Attributes popularityAttributes(Film film, Integer[] genreIds) {
+        return new FilmPopularityIndex.Attributes(
+                film.getReleaseDate() != null ? film.getReleaseDate().getYear() : null, Set.of(genreIds));
+    }
+
     @Override
     public Collection<Film> findAll() {
-        String sql = "SELECT f.*, r.name as mpa_name FROM films f LEFT JOIN ratings r ON f.rating_id = r.id";
-        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm);
-        loadGenres(films);
+        return findAll(FilmField.ALL);
+    }
+
+    @Override
+    public Collection<Film> findAll(Set<FilmField> fields) {
+        String sql = selectFilms(fields);
+        FilmRowMapper mapper = new FilmRowMapper(fields);
+        List<Film> films = metrics.record("film.findAll", () -> jdbcTemplate.query(sql, mapper));
+        mapper.loadMissingGenres();
         return films;
     }
 
+    @Override
+    public Collection<Film> findPage(long afterId, int limit) {
+        return findPage(afterId, limit, FilmField.ALL);
+    }
+
+    @Override
+    public Collection<Film> findPage(long afterId, int limit, Set<FilmField> fields) {
+        String sql = selectFilms(fields) + " WHERE f.id > ? ORDER BY f.id LIMIT ?";
+        FilmRowMapper mapper = new FilmRowMapper(fields);
+        List<Film> films = metrics.record("film.findPage", () -> jdbcTemplate.query(sql, mapper, afterId, limit));
+        mapper.loadMissingGenres();
+        return films;
+    }
+
+    /**
+     * Читает фильмы страницами по id и отдаёт страницу только после того, как она прочитана вместе
+     * с жанрами: соединение не занято, пока потребитель пишет фильмы медленному клиенту.
+     */
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        long afterId = 0;
+        Collection<Film> page;
+
+        do {
+            page = findPage(afterId, STREAM_PAGE_SIZE);
+            for (Film film : page) {
+                consumer.accept(film);
+                afterId = film.getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
     @Override
     public Film getById(Long id) {
-        String sql = "SELECT f.*, r.name as mpa_name FROM films f LEFT JOIN ratings r ON f.rating_id = r.id WHERE f.id = ?";
+        String sql = selectFilms(FilmField.ALL) + " WHERE f.id = ?";
+        FilmRowMapper mapper = new FilmRowMapper(FilmField.ALL);
 
         try {
-            Film film = jdbcTemplate.queryForObject(sql, this::mapRowToFilm, id);
-            loadGenres(Collections.singletonList(film));
+            Film film = metrics.record("film.getById", () -> jdbcTemplate.queryForObject(sql, mapper, id));
+            mapper.loadMissingGenres();
             return film;
         } catch (EmptyResultDataAccessException e) {
             throw new NotFoundException("Фильм с id = " + id + " не найден");
         }
     }
 
+    /**
+     * Запись лайка и обновление индексов идут под блокировкой пары «фильм — пользователь»:
+     * иначе параллельная отмена могла бы обновить индексы раньше самого лайка, и индексы
+     * разошлись бы с таблицей до перезапуска.
+     */
     @Override
     public void addLike(Long filmId, Long userId) {
-        Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM likes WHERE film_id = ? AND user_id = ?", Integer.class, filmId, userId);
+        likeLocks.withLock(new Like(filmId, userId), () -> insertLike(filmId, userId));
+    }
+
+    private void insertLike(Long filmId, Long userId) {
+        long likedAt = System.currentTimeMillis();
+
+        if (likeWriteBuffer.isEnabled()) {
+            if (likeWriteBuffer.like(filmId, userId, likedAt)) {
+                likeAdded(filmId, userId, likedAt);
+            }
+            return;
+        }
+
+        int rows;
+
+        try {
+            rows = metrics.record("film.addLike", () -> jdbcTemplate.update(INSERT_LIKE_SQL,
+                    filmId, userId, new Timestamp(likedAt), filmId, userId));
+        } catch (DuplicateKeyException e) {
+            // такой же лайк параллельно вставил другой запрос
+            rows = 0;
+        } catch (DataIntegrityViolationException e) {
+            throw likeReferenceNotFound(e, filmId, userId);
+        }
 
-        if (count != null && count == 0) {
-            jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        if (rows > 0) {
+            likeAdded(filmId, userId, likedAt);
         }
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
-        int rows = jdbcTemplate.update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId);
+        likeLocks.withLock(new Like(filmId, userId), () -> deleteLike(filmId, userId));
+    }
+
+    private void deleteLike(Long filmId, Long userId) {
+        if (likeWriteBuffer.isEnabled()) {
+            // пара заблокирована, поэтому лайк, которого нет в буфере, уже в базе и не изменится до отмены
+            Long likedAt = likeWriteBuffer.getPendingLikedAt(filmId, userId);
+            if (likedAt == null) {
+                likedAt = readLikedAt(filmId, userId);
+            }
+
+            if (!likeWriteBuffer.unlike(filmId, userId)) {
+                throw new NotFoundException("Лайк не найден");
+            }
+            likeRemoved(filmId, userId, likedAt);
+            return;
+        }
 
-        if (rows == 0) {
+        List<Timestamp> removed = metrics.record("film.removeLike", () -> jdbcTemplate.queryForList(
+                REMOVE_LIKE_SQL, Timestamp.class, filmId, userId));
+
+        if (removed.isEmpty()) {
             throw new NotFoundException("Лайк не найден");
         }
+        likeRemoved(filmId, userId, removed.getFirst().getTime());
     }
 
-    @Override
-    public Collection<Film> getMostPopular(int count) {
-        String sql = "SELECT f.*, r.name as mpa_name, COUNT(l.user_id) AS likes_count " +
-                "FROM films f " +
-                "LEFT JOIN ratings r ON f.rating_id = r.id " +
-                "LEFT JOIN likes l ON f.id = l.film_id " +
-                "GROUP BY f.id " +
-                "ORDER BY likes_count DESC LIMIT ?";
-        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, count);
-        loadGenres(films);
-        return films;
+    private Long readLikedAt(long filmId, long userId) {
+        List<Timestamp> likedAt = metrics.record("film.likedAt", () -> jdbcTemplate.queryForList(
+                LIKED_AT_SQL, Timestamp.class, filmId, userId));
+        return likedAt.isEmpty() ? null : likedAt.getFirst().getTime();
     }
 
-    private Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
-        Film film = new Film();
-        film.setId(rs.getLong("id"));
-        film.setName(rs.getString("name"));
-        film.setDescription(rs.getString("description"));
+    private void likeAdded(long filmId, long userId, long likedAt) {
+        popularityIndex.likeAdded(filmId);
+        likesIndex.likeAdded(filmId, userId);
+        trendingIndex.likeAdded(filmId, likedAt);
+    }
 
-        if (rs.getDate("release_date") != null) {
-            film.setReleaseDate(rs.getDate("release_date").toLocalDate());
-        }
-        film.setDuration(rs.getLong("duration"));
+    private void likeRemoved(long filmId, long userId, Long likedAt) {
+        popularityIndex.likeRemoved(filmId);
+        likesIndex.likeRemoved(filmId, userId);
+        trendingIndex.likeRemoved(filmId, likedAt);
+    }
 
-        if (rs.getObject("rating_id") != null) {
-            film.setMpa(new Rating(rs.getInt("rating_id"), rs.getString("mpa_name")));
+    private RuntimeException likeReferenceNotFound(DataIntegrityViolationException e, Long filmId, Long userId) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toUpperCase();
+
+        if (message.contains(FK_LIKES_FILM)) {
+            return new NotFoundException("Фильм с id = " + filmId + " не найден");
+        }
+        if (message.contains(FK_LIKES_USER)) {
+            return new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
-        return film;
+        return e;
     }
 
-    private void saveGenres(Film film) {
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            Set<Integer> uniqueGenreIds = film.getGenres().stream()
-                    .filter(Objects::nonNull)
-                    .map(Genre::getId)
-                    .collect(Collectors.toSet());
+    @Override
+    public List<BatchItemResult<Like>> addLikes(List<Like> likes) {
+        if (likeWriteBuffer.isEnabled()) {
+            likeWriteBuffer.flush();
+        }
 
-            String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-            List<Object[]> batchArgs = new ArrayList<>();
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
 
-            for (Integer genreId : uniqueGenreIds) {
-                batchArgs.add(new Object[]{film.getId(), genreId});
+        for (Like like : likes) {
+            if (like.getFilmId() != null && like.getUserId() != null) {
+                filmIds.add(like.getFilmId());
+                userIds.add(like.getUserId());
             }
-            jdbcTemplate.batchUpdate(sql, batchArgs);
         }
+
+        Set<Long> existingFilms = SqlHelper.findExistingIds(jdbcTemplate, metrics, "films", filmIds);
+        Set<Long> existingUsers = SqlHelper.findExistingIds(jdbcTemplate, metrics, "users", userIds);
+
+        List<BatchItemResult<Like>> results = new ArrayList<>(likes.size());
+        List<BatchItemResult<Like>> pending = new ArrayList<>();
+        Set<Like> seen = new HashSet<>();
+
+        for (Like like : likes) {
+            if (like.getFilmId() == null || like.getUserId() == null) {
+                results.add(new BatchItemResult<>(like, BatchStatus.INVALID, "Не указан id фильма или пользователя"));
+            } else if (!existingFilms.contains(like.getFilmId())) {
+                results.add(new BatchItemResult<>(like, BatchStatus.NOT_FOUND,
+                        "Фильм с id = " + like.getFilmId() + " не найден"));
+            } else if (!existingUsers.contains(like.getUserId())) {
+                results.add(new BatchItemResult<>(like, BatchStatus.NOT_FOUND,
+                        "Пользователь с id = " + like.getUserId() + " не найден"));
+            } else if (!seen.add(like)) {
+                results.add(BatchItemResult.of(like, BatchStatus.ALREADY_EXISTS));
+            } else {
+                BatchItemResult<Like> result = BatchItemResult.of(like, BatchStatus.CREATED);
+                results.add(result);
+                pending.add(result);
+            }
+        }
+
+        List<Like> pendingLikes = pending.stream().map(BatchItemResult::getItem).toList();
+        likeLocks.withLocks(pendingLikes, () -> {
+            insertLikes(pending);
+            return null;
+        });
+        return results;
     }
 
-    private void loadGenres(List<Film> films) {
-        if (films == null || films.isEmpty()) {
-            return;
+    private void insertLikes(List<BatchItemResult<Like>> pending) {
+        long likedAt = System.currentTimeMillis();
+        Timestamp createdAt = new Timestamp(likedAt);
+        int[][] counts = transactionTemplate.execute(status -> metrics.record("film.addLikes", () ->
+                jdbcTemplate.batchUpdate(INSERT_LIKE_SQL, pending, BATCH_SIZE, (ps, result) -> {
+                    ps.setLong(1, result.getItem().getFilmId());
+                    ps.setLong(2, result.getItem().getUserId());
+                    ps.setTimestamp(3, createdAt);
+                    ps.setLong(4, result.getItem().getFilmId());
+                    ps.setLong(5, result.getItem().getUserId());
+                })));
+
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                BatchItemResult<Like> result = pending.get(i++);
+
+                if (count == 0) {
+                    result.setStatus(BatchStatus.ALREADY_EXISTS);
+                } else {
+                    likeAdded(result.getItem().getFilmId(), result.getItem().getUserId(), likedAt);
+                }
+            }
         }
+    }
 
-        for (Film film : films) {
-            film.getGenres().clear();
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year) {
+        return getMostPopular(count, genreId, year, FilmField.ALL);
+    }
+
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return getByIds(popularityIndex.getTop(count, genreId, year), fields);
+    }
+
+    @Override
+    public Collection<Film> getTrending(Duration window, int count) {
+        return getByIds(trendingIndex.getTop(window, count, System.currentTimeMillis()), FilmField.ALL);
+    }
+
+    @Override
+    public Collection<Film> getRecommendations(Long userId, int limit) {
+        return getByIds(Arrays.stream(likesIndex.recommend(userId, limit)).boxed().toList(), FilmField.ALL);
+    }
+
+    @Override
+    public Collection<Film> search(String query, Set<FilmSearchField> fields, int limit) {
+        return getByIds(Arrays.stream(searchIndex.search(query, fields, limit)).boxed().toList(), FilmField.ALL);
+    }
+
+    private List<Film> getByIds(List<Long> ids, Set<FilmField> fields) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        String inSql = String.join(",", Collections.nCopies(films.size(), "?"));
-        Object[] args = films.stream().map(Film::getId).toArray();
+        String sql = selectFilms(fields) + " WHERE f.id IN (" + SqlHelper.placeholders(ids.size()) + ")";
+        FilmRowMapper mapper = new FilmRowMapper(fields);
 
-        String sql = "SELECT fg.film_id, g.id AS genre_id, g.name AS genre_name " +
-                "FROM genres g " +
-                "JOIN film_genres fg ON g.id = fg.genre_id " +
-                "WHERE fg.film_id IN (" + inSql + ") " +
-                "ORDER BY g.id";
+        Map<Long, Film> filmById = metrics.record("film.getByIds", () ->
+                        jdbcTemplate.query(sql, mapper, ids.toArray())).stream()
+                .collect(Collectors.toMap(Film::getId, f -> f));
+        mapper.loadMissingGenres();
 
-        Map<Long, Film> filmById = films.stream().collect(Collectors.toMap(Film::getId, f -> f));
+        return ids.stream()
+                .map(filmById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        jdbcTemplate.query(sql, new ResultSetExtractor<Void>() {
+    /**
+     * Выборка только нужных столбцов; рейтинги присоединяются, только если запрошен {@link FilmField#MPA}.
+     */
+    private static String selectFilms(Set<FilmField> fields) {
+        StringBuilder sql = new StringBuilder("SELECT f.id");
 
-            @Override
-            public Void extractData(ResultSet rs) throws SQLException {
-                while (rs.next()) {
-                    Long filmId = rs.getLong("film_id");
-                    Film film = filmById.get(filmId);
+        if (fields.contains(FilmField.NAME)) {
+            sql.append(", f.name");
+        }
+        if (fields.contains(FilmField.DESCRIPTION)) {
+            sql.append(", f.description");
+        }
+        if (fields.contains(FilmField.RELEASE_DATE)) {
+            sql.append(", f.release_date");
+        }
+        if (fields.contains(FilmField.DURATION)) {
+            sql.append(", f.duration");
+        }
+        if (fields.contains(FilmField.GENRES)) {
+            sql.append(", f.genre_ids");
+        }
+        if (fields.contains(FilmField.MPA)) {
+            sql.append(", f.rating_id, r.name AS mpa_name FROM films f LEFT JOIN ratings r ON f.rating_id = r.id");
+        } else {
+            sql.append(" FROM films f");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Собирает фильм из строки {@link #selectFilms}. Жанры берутся из {@code genre_ids};
+     * фильмы, у которых копия ещё не заполнена, запоминаются и дочитываются из {@code film_genres}
+     * в {@link #loadMissingGenres()}.
+     */
+    private final class FilmRowMapper implements RowMapper<Film> {
+        private final Set<FilmField> fields;
+        private final List<Film> withoutGenreIds = new ArrayList<>();
+
+        FilmRowMapper(Set<FilmField> fields) {
+            this.fields = fields;
+        }
 
-                    if (film != null) {
-                        film.getGenres().add(new Genre(rs.getInt("genre_id"),
-                                rs.getString("genre_name")));
+        @Override
+        public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Film film = new Film();
+            film.setId(rs.getLong("id"));
+
+            if (fields.contains(FilmField.NAME)) {
+                film.setName(rs.getString("name"));
+            }
+            if (fields.contains(FilmField.DESCRIPTION)) {
+                film.setDescription(rs.getString("description"));
+            }
+            if (fields.contains(FilmField.RELEASE_DATE) && rs.getDate("release_date") != null) {
+                film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+            }
+            if (fields.contains(FilmField.DURATION)) {
+                film.setDuration(rs.getLong("duration"));
+            }
+            if (fields.contains(FilmField.GENRES)) {
+                Array genreIds = rs.getArray("genre_ids");
+
+                if (genreIds == null) {
+                    withoutGenreIds.add(film);
+                } else {
+                    for (Object genreId : (Object[]) genreIds.getArray()) {
+                        Genre genre = referenceData.findGenre((Integer) genreId);
+                        film.getGenres().add(genre != null ? genre : new Genre((Integer) genreId, null));
                     }
                 }
-                return null;
             }
-        }, args);
+            if (fields.contains(FilmField.MPA) && rs.getObject("rating_id") != null) {
+                film.setMpa(new Rating(rs.getInt("rating_id"), rs.getString("mpa_name")));
+            }
+            return film;
+        }
+
+        void loadMissingGenres() {
+            if (!withoutGenreIds.isEmpty()) {
+                genreLoader.load(withoutGenreIds);
+                withoutGenreIds.clear();
+            }
+        }
+    }
+
+    /**
+     * Уникальные id жанров фильма по возрастанию — в таком виде они лежат в {@code genre_ids}.
+     */
+    private static Integer[] genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return new Integer[0];
+        }
+        return film.getGenres().stream()
+                .filter(Objects::nonNull)
+                .map(Genre::getId)
+                .distinct()
+                .sorted()
+                .toArray(Integer[]::new);
+    }
+
+    private void saveGenres(long filmId, Integer[] genreIds) {
+        if (genreIds.length > 0) {
+            String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
+            List<Object[]> batchArgs = new ArrayList<>();
+
+            for (Integer genreId : genreIds) {
+                batchArgs.add(new Object[]{filmId, genreId});
+            }
+            metrics.record("film.saveGenres", () -> jdbcTemplate.batchUpdate(sql, batchArgs));
+        }
     }
 
     private void validateMpaAndGenres(Film film) {
         if (film.getMpa() != null && film.getMpa().getId() != 0) {
-            Integer mpaCount = jdbcTemplate.queryForObject(
-                    "SELECT count(*) FROM ratings WHERE id = ?", Integer.class, film.getMpa().getId());
-
-            if (mpaCount == null || mpaCount == 0) {
+            if (referenceData.findRating(film.getMpa().getId()) == null) {
                 throw new NotFoundException("MPA рейтинг не найден");
             }
         }
@@ -218,10 +618,8 @@ public class FilmDbStorage implements FilmStorage {
             for (Genre genre : film.getGenres()) {
 
                 if (genre == null || genre.getId() == 0) continue;
-                Integer genreCount = jdbcTemplate.queryForObject(
-                        "SELECT count(*) FROM genres WHERE id = ?", Integer.class, genre.getId());
 
-                if (genreCount == null || genreCount == 0) {
+                if (referenceData.findGenre(genre.getId()) == null) {
                     throw new NotFoundException("Жанр не найден");
                 }
             }
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code POST /actuator/genreids} перестраивает {@code films.genre_ids} на работающем приложении,
+ * без перезапуска и без пересоздания схемы при старте.
+ */
+@Component
+@Endpoint(id = "genreids")
+@RequiredArgsConstructor
+public class FilmGenreIdsEndpoint {
+    private final FilmGenreIdsRebuilder rebuilder;
+
+    @WriteOperation
+    public Map<String, Long> rebuild() {
+        return Map.of("updated", rebuilder.rebuild());
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Перестраивает {@code films.genre_ids} по {@code film_genres} для уже лежащих в базе фильмов.
+ * Запускается на работающем приложении через {@link FilmGenreIdsEndpoint} или при старте
+ * с {@code --filmorate.films.rebuild-genre-ids=true}; при старте это имеет смысл только
+ * со {@code spring.sql.init.mode=never}, иначе {@code schema.sql} пересоздаёт таблицы и фильмов ещё нет.
+ * Фильмы обходятся диапазонами id, каждый диапазон — отдельная транзакция, так что запросы
+ * не ждут всей перестройки. Пока копия не заполнена, хранилище дочитывает жанры фильма отдельным запросом.
+ */
+@Slf4j
+@Component
+public class FilmGenreIdsRebuilder implements ApplicationRunner {
+    static final String REBUILD_SQL = "UPDATE films f SET genre_ids = " +
+            "(SELECT COALESCE(ARRAY_AGG(fg.genre_id ORDER BY fg.genre_id), CAST(ARRAY[] AS INTEGER ARRAY)) " +
+            "FROM film_genres fg WHERE fg.film_id = f.id) " +
+            "WHERE f.id BETWEEN ? AND ?";
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM films";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageMetrics metrics;
+    private final boolean rebuildOnStart;
+    private final int chunkSize;
+
+    public FilmGenreIdsRebuilder(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 StorageMetrics metrics,
+                                 @Value("${filmorate.films.rebuild-genre-ids:false}") boolean rebuildOnStart,
+                                 @Value("${filmorate.films.rebuild-chunk-size:10000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
+        this.rebuildOnStart = rebuildOnStart;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (rebuildOnStart) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Возвращает число обновлённых фильмов. Параллельные вызовы выполняются по очереди.
+     */
+    public synchronized long rebuild() {
+        long maxId = metrics.record("film.rebuildGenreIdsMaxId", () ->
+                jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class));
+        long start = System.nanoTime();
+        long updated = 0;
+
+        for (long chunkStart = 1; chunkStart <= maxId; chunkStart += chunkSize) {
+            long from = chunkStart;
+            long to = chunkStart + chunkSize - 1;
+            Integer rows = transactionTemplate.execute(status -> metrics.record("film.rebuildGenreIds", () ->
+                    jdbcTemplate.update(REBUILD_SQL, from, to)));
+            updated += rows != null ? rows : 0;
+        }
+
+        log.info("Копия жанров в films.genre_ids перестроена для {} фильмов за {} мс", updated,
+                (System.nanoTime() - start) / 1_000_000);
+        return updated;
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загрузка жанров для списка фильмов. Id фильмов делятся на пачки, а каждая пачка дополняется
+ * повтором последнего id до одного из фиксированных размеров {@link #CHUNK_SIZES}, поэтому
+ * текстов запроса всего несколько и подготовленные выражения переиспользуются.
+ * Жанры берутся из {@link ReferenceData}, так что фильмы разделяют одни и те же объекты жанров.
+ * <p>
+ * При {@code filmorate.genres.load-parallelism} больше 1 пачки читаются параллельно
+ * в ограниченном пуле; внутри транзакции загрузка всегда идёт в текущем потоке,
+ * иначе другие соединения не увидели бы её незафиксированных изменений.
+ */
+@Component
+public class FilmGenreLoader {
+    static final int[] CHUNK_SIZES = {1, 8, 64, SqlHelper.IN_CHUNK_SIZE};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceData referenceData;
+    private final StorageMetrics metrics;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public FilmGenreLoader(JdbcTemplate jdbcTemplate,
+                           ReferenceData referenceData,
+                           StorageMetrics metrics,
+                           @Value("${filmorate.genres.load-parallelism:1}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceData = referenceData;
+        this.metrics = metrics;
+        this.parallelism = parallelism;
+        this.executor = parallelism > 1 ? newExecutor(parallelism) : null;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void load(List<Film> films) {
+        if (films == null || films.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Film> filmById = new HashMap<>(films.size() * 2);
+        for (Film film : films) {
+            film.getGenres().clear();
+            filmById.put(film.getId(), film);
+        }
+
+        List<List<Long>> chunks = SqlHelper.chunks(new ArrayList<>(filmById.keySet()), SqlHelper.IN_CHUNK_SIZE);
+
+        if (executor == null || chunks.size() < 2 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (List<Long> chunk : chunks) {
+                loadChunk(chunk, filmById);
+            }
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        for (List<Long> chunk : chunks) {
+            futures.add(executor.submit(QueryCounter.propagate(() -> loadChunk(chunk, filmById))));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Загрузка жанров прервана", e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw e.getCause() instanceof RuntimeException runtime
+                        ? runtime : new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    static int paddedSize(int size) {
+        for (int chunkSize : CHUNK_SIZES) {
+            if (size <= chunkSize) {
+                return chunkSize;
+            }
+        }
+        throw new IllegalArgumentException("Пачка больше " + SqlHelper.IN_CHUNK_SIZE + " id");
+    }
+
+    private void loadChunk(List<Long> filmIds, Map<Long, Film> filmById) {
+        int size = paddedSize(filmIds.size());
+        Object[] args = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            args[i] = filmIds.get(Math.min(i, filmIds.size() - 1));
+        }
+
+        String sql = "SELECT film_id, genre_id FROM film_genres " +
+                "WHERE film_id IN (" + SqlHelper.placeholders(size) + ") " +
+                "ORDER BY film_id, genre_id";
+
+        metrics.run("film.loadGenres", () -> jdbcTemplate.query(sql, rs -> {
+            Film film = filmById.get(rs.getLong("film_id"));
+            int genreId = rs.getInt("genre_id");
+            Genre genre = referenceData.findGenre(genreId);
+
+            film.getGenres().add(genre != null ? genre : new Genre(genreId, null));
+        }, args));
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        AtomicInteger counter = new AtomicInteger();
+
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "film-genre-loader-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
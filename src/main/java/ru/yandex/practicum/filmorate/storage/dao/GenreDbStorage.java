@@ -15,17 +15,18 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class GenreDbStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final StorageMetrics metrics;
 
     public Collection<Genre> findAll() {
         String sql = "SELECT * FROM genres ORDER BY id";
-        return jdbcTemplate.query(sql, this::mapRowToGenre);
+        return metrics.record("genre.findAll", () -> jdbcTemplate.query(sql, this::mapRowToGenre));
     }
 
     public Genre getById(int id) {
         String sql = "SELECT * FROM genres WHERE id = ?";
 
         try {
-            return jdbcTemplate.queryForObject(sql, this::mapRowToGenre, id);
+            return metrics.record("genre.getById", () -> jdbcTemplate.queryForObject(sql, this::mapRowToGenre, id));
         } catch (EmptyResultDataAccessException e) {
             throw new NotFoundException("Жанр с id = " + id + " не найден");
         }
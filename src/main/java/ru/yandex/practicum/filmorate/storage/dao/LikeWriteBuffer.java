@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import exception.NotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись лайков. Изменения копятся в памяти по паре (фильм, пользователь):
+ * лайк и последующая отмена взаимно гасятся, а фоновый поток пишет накопленное пачками
+ * по достижении размера пачки или по таймеру. При остановке приложения буфер сбрасывается.
+ *
+ * <p>Состояние лайка, которого нет в буфере, берётся из {@link FilmLikesIndex}: вызывающий
+ * обновляет индекс сразу после изменения в буфере под блокировкой пары «фильм — пользователь»,
+ * поэтому без изменений в буфере индекс совпадает с таблицей. Под блокировками полос нет запросов
+ * к базе. Блокировка сброса — {@link ReentrantLock}, а не {@code synchronized}: под ней идёт запись,
+ * и на виртуальных потоках монитор держал бы поток-носитель всё время ожидания соединения.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+    private static final String DELETE_LIKE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String USER_EXISTS_SQL = "SELECT count(*) FROM users WHERE id = ?";
+    private static final int STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageMetrics metrics;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmLikesIndex likesIndex;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration flushInterval;
+
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<Key, Pending> inFlight = new ConcurrentHashMap<>();
+    /**
+     * Пользователи, чьё существование уже проверено по базе: пользователи не удаляются.
+     */
+    private final Set<Long> knownUsers = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+
+    public LikeWriteBuffer(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           StorageMetrics metrics,
+                           FilmPopularityIndex popularityIndex,
+                           FilmLikesIndex likesIndex,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.flush-interval:1s}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
+        this.popularityIndex = popularityIndex;
+        this.likesIndex = likesIndex;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("Отложенная запись лайков включена: пачка {}, интервал {}", batchSize, flushInterval);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+
+        flusher.shutdown();
+        flusher.awaitTermination(flushInterval.toMillis() * 2, TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param likedAt время лайка, оно же попадёт в {@code likes.created_at}
+     * @return true, если лайка ещё не было и он поставлен
+     */
+    public boolean like(long filmId, long userId, long likedAt) {
+        return change(new Key(filmId, userId), true, likedAt);
+    }
+
+    /**
+     * @return true, если лайк был и он снят
+     */
+    public boolean unlike(long filmId, long userId) {
+        return change(new Key(filmId, userId), false, 0);
+    }
+
+    /**
+     * Время лайка, который ещё не записан в базу: он ждёт в буфере или пишется текущей пачкой.
+     *
+     * @return null, если такого лайка нет; тогда лайк, если он есть, уже записан в базу
+     */
+    public Long getPendingLikedAt(long filmId, long userId) {
+        Key key = new Key(filmId, userId);
+        ReentrantLock stripe = stripe(key);
+        stripe.lock();
+        try {
+            Pending change = pending.get(key);
+
+            if (change == null) {
+                change = inFlight.get(key);
+            }
+            return change != null && change.liked() ? change.likedAt() : null;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<Key, Pending> batch = new HashMap<>();
+
+        for (Key key : pending.keySet()) {
+            ReentrantLock stripe = stripe(key);
+            stripe.lock();
+            try {
+                Pending change = pending.remove(key);
+
+                if (change != null) {
+                    inFlight.put(key, change);
+                    batch.put(key, change);
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+
+        List<Key> added = new ArrayList<>();
+        List<Key> removed = new ArrayList<>();
+        batch.forEach((key, change) -> (change.liked() ? added : removed).add(key));
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                metrics.record("like.flushAdded", () ->
+                        jdbcTemplate.batchUpdate(FilmDbStorage.INSERT_LIKE_SQL, added, batchSize, (ps, key) -> {
+                            ps.setLong(1, key.filmId());
+                            ps.setLong(2, key.userId());
+                            ps.setTimestamp(3, new Timestamp(batch.get(key).likedAt()));
+                            ps.setLong(4, key.filmId());
+                            ps.setLong(5, key.userId());
+                        }));
+                metrics.record("like.flushRemoved", () ->
+                        jdbcTemplate.batchUpdate(DELETE_LIKE_SQL, removed, batchSize, (ps, key) -> {
+                            ps.setLong(1, key.filmId());
+                            ps.setLong(2, key.userId());
+                        }));
+            });
+            log.debug("Записано отложенных лайков: {}, отмен: {}", added.size(), removed.size());
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать {} отложенных изменений лайков, они возвращены в буфер", batch.size(), e);
+            batch.forEach(this::requeue);
+            throw e;
+        } finally {
+            for (Key key : batch.keySet()) {
+                ReentrantLock stripe = stripe(key);
+                stripe.lock();
+                try {
+                    inFlight.remove(key);
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+    }
+
+    private boolean change(Key key, boolean liked, long likedAt) {
+        checkExists(key);
+
+        ReentrantLock stripe = stripe(key);
+        stripe.lock();
+        try {
+            Pending current = pending.get(key);
+            boolean stored;
+            boolean effective;
+
+            if (current != null) {
+                stored = current.stored();
+                effective = current.liked();
+            } else {
+                Pending flushing = inFlight.get(key);
+                stored = flushing != null ? flushing.liked() : likesIndex.isLiked(key.filmId(), key.userId());
+                effective = stored;
+            }
+
+            if (effective == liked) {
+                return false;
+            }
+
+            if (liked == stored) {
+                pending.remove(key);
+            } else {
+                pending.put(key, new Pending(liked, stored, likedAt));
+            }
+        } finally {
+            stripe.unlock();
+        }
+
+        if (pending.size() >= batchSize && flusher != null && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет фильм и пользователя до блокировки полосы. Фильм ищется в индексе популярности,
+     * пользователь — в базе, но только при первом обращении.
+     */
+    private void checkExists(Key key) {
+        if (!popularityIndex.contains(key.filmId())) {
+            throw new NotFoundException("Фильм с id = " + key.filmId() + " не найден");
+        }
+        if (knownUsers.contains(key.userId())) {
+            return;
+        }
+
+        Integer users = metrics.record("like.userExists", () ->
+                jdbcTemplate.queryForObject(USER_EXISTS_SQL, Integer.class, key.userId()));
+        if (users == null || users == 0) {
+            throw new NotFoundException("Пользователь с id = " + key.userId() + " не найден");
+        }
+        knownUsers.add(key.userId());
+    }
+
+    private void requeue(Key key, Pending failed) {
+        ReentrantLock stripe = stripe(key);
+        stripe.lock();
+        try {
+            Pending newer = pending.get(key);
+
+            if (newer == null) {
+                pending.put(key, failed);
+            } else if (newer.liked() == failed.stored()) {
+                pending.remove(key);
+            } else {
+                pending.put(key, new Pending(newer.liked(), failed.stored(), newer.likedAt()));
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // ошибка уже залогирована, изменения останутся в буфере до следующей попытки
+        }
+    }
+
+    private ReentrantLock stripe(Key key) {
+        return stripes[Math.floorMod(key.hashCode(), STRIPES)];
+    }
+
+    private record Key(long filmId, long userId) {
+    }
+
+    /**
+     * @param liked  состояние, которое нужно записать
+     * @param stored состояние в базе на момент первого изменения, с ним сравнивается новое для взаимного гашения
+     * @param likedAt время лайка для {@code likes.created_at}, если {@code liked}
+     */
+    private record Pending(boolean liked, boolean stored, long likedAt) {
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчик SQL-запросов, выполненных в рамках одного HTTP-запроса.
+ * Считает только между {@link #start()} и {@link #stop()}, в остальное время ничего не делает.
+ * Счётчик привязан к потоку; задачи, которые хранилище отдаёт в свои пулы, оборачиваются
+ * в {@link #propagate(Runnable)} и считаются в счётчик запроса, их запустившего.
+ * Пакетная запись считается по числу отправленных в базу пачек, а не по числу строк в них.
+ */
+public final class QueryCounter {
+    private static final ThreadLocal<AtomicInteger> COUNTER = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public static void start() {
+        COUNTER.set(new AtomicInteger());
+    }
+
+    public static int current() {
+        AtomicInteger counter = COUNTER.get();
+        return counter != null ? counter.get() : 0;
+    }
+
+    public static int stop() {
+        int count = current();
+        COUNTER.remove();
+        return count;
+    }
+
+    /**
+     * Задача, которая в любом потоке считает запросы в счётчик текущего потока.
+     */
+    public static Runnable propagate(Runnable task) {
+        AtomicInteger counter = COUNTER.get();
+
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            AtomicInteger previous = COUNTER.get();
+            COUNTER.set(counter);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    COUNTER.set(previous);
+                } else {
+                    COUNTER.remove();
+                }
+            }
+        };
+    }
+
+    static void increment() {
+        add(1);
+    }
+
+    static void add(int queries) {
+        AtomicInteger counter = COUNTER.get();
+
+        if (counter != null) {
+            counter.addAndGet(queries);
+        }
+    }
+}
@@ -15,17 +15,18 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class RatingDbStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final StorageMetrics metrics;
 
     public Collection<Rating> findAll() {
         String sql = "SELECT * FROM ratings ORDER BY id";
-        return jdbcTemplate.query(sql, this::mapRowToMpa);
+        return metrics.record("rating.findAll", () -> jdbcTemplate.query(sql, this::mapRowToMpa));
     }
 
     public Rating getById(int id) {
         String sql = "SELECT * FROM ratings WHERE id = ?";
 
         try {
-            return jdbcTemplate.queryForObject(sql, this::mapRowToMpa, id);
+            return metrics.record("rating.getById", () -> jdbcTemplate.queryForObject(sql, this::mapRowToMpa, id));
         } catch (EmptyResultDataAccessException e) {
             throw new NotFoundException("Рейтинг МРА с id = " + id + " не найден");
         }
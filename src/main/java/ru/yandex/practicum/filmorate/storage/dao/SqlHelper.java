@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.util.*;
+
+/**
+ * Общие приёмы для запросов со списком id: разбиение на пачки фиксированного размера
+ * и проверка существования сразу для множества id.
+ */
+final class SqlHelper {
+    static final int IN_CHUNK_SIZE = 500;
+
+    private SqlHelper() {
+    }
+
+    static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    static <T> List<List<T>> chunks(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>((items.size() + size - 1) / size);
+
+        for (int from = 0; from < items.size(); from += size) {
+            chunks.add(items.subList(from, Math.min(from + size, items.size())));
+        }
+        return chunks;
+    }
+
+    static Set<Long> findExistingIds(JdbcTemplate jdbcTemplate, StorageMetrics metrics, String table,
+                                     Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+
+        for (List<Long> chunk : chunks(new ArrayList<>(ids), IN_CHUNK_SIZE)) {
+            String sql = "SELECT id FROM " + table + " WHERE id IN (" + placeholders(chunk.size()) + ")";
+            metrics.run(table + ".findExistingIds", () -> jdbcTemplate.query(sql, rs -> {
+                existing.add(rs.getLong("id"));
+            }, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    /**
+     * Собирает пары (ключ, значение) в отсортированные массивы значений по ключу.
+     * Запрос должен быть упорядочен по {@code keyColumn}, затем по {@code valueColumn}.
+     */
+    static ResultSetExtractor<Map<Long, long[]>> adjacency(String keyColumn, String valueColumn) {
+        return rs -> {
+            Map<Long, long[]> result = new HashMap<>();
+            long[] buffer = new long[16];
+            int size = 0;
+            long currentKey = 0;
+
+            while (rs.next()) {
+                long key = rs.getLong(keyColumn);
+
+                if (size > 0 && key != currentKey) {
+                    result.put(currentKey, Arrays.copyOf(buffer, size));
+                    size = 0;
+                }
+                currentKey = key;
+
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = rs.getLong(valueColumn);
+            }
+            if (size > 0) {
+                result.put(currentKey, Arrays.copyOf(buffer, size));
+            }
+            return result;
+        };
+    }
+}
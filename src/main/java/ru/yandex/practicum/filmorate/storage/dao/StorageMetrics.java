@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики обращений хранилищ к базе: время каждой логической операции
+ * с гистограммой для перцентилей, число затронутых строк и счётчик запросов
+ * текущего HTTP-запроса ({@link QueryCounter}).
+ */
+@Component
+public class StorageMetrics {
+    public static final String QUERY_TIMER = "filmorate.storage.query";
+    public static final String ROWS_SUMMARY = "filmorate.storage.rows";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rows = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StorageMetrics(ObjectProvider<MeterRegistry> registry) {
+        this(registry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    public StorageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T record(String operation, Supplier<T> query) {
+        QueryCounter.increment();
+        long start = System.nanoTime();
+
+        try {
+            T result = query.get();
+            recordRows(operation, result);
+            return result;
+        } finally {
+            timer(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void run(String operation, Runnable query) {
+        record(operation, () -> {
+            query.run();
+            return null;
+        });
+    }
+
+    private void recordRows(String operation, Object result) {
+        long count;
+
+        if (result instanceof Collection<?> collection) {
+            count = collection.size();
+        } else if (result instanceof Integer updated) {
+            count = updated;
+        } else if (result instanceof int[] updated) {
+            count = sum(updated);
+        } else if (result instanceof int[][] batches) {
+            // каждая пачка — отдельная отправка в базу, первая уже посчитана в record
+            QueryCounter.add(Math.max(batches.length - 1, 0));
+            count = 0;
+            for (int[] batch : batches) {
+                count += sum(batch);
+            }
+        } else {
+            return;
+        }
+        rowsSummary(operation).record(count);
+    }
+
+    private static long sum(int[] counts) {
+        long sum = 0;
+        for (int count : counts) {
+            sum += Math.max(count, 0);
+        }
+        return sum;
+    }
+
+    private Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, op -> Timer.builder(QUERY_TIMER)
+                .description("Время выполнения запроса хранилища")
+                .tag("operation", op)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private DistributionSummary rowsSummary(String operation) {
+        return rows.computeIfAbsent(operation, op -> DistributionSummary.builder(ROWS_SUMMARY)
+                .description("Число строк, прочитанных или изменённых запросом хранилища")
+                .tag("operation", op)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
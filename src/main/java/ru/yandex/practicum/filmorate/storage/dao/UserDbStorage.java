@@ -1,27 +1,92 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
 import exception.NotFoundException;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.sql.*;
-import java.util.Collection;
+import java.sql.Date;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Repository("userDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final int BATCH_SIZE = 1000;
+    private static final String INSERT_FRIEND_SQL = "INSERT INTO friendship (user_id, friend_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM friendship WHERE user_id = ? AND friend_id = ?)";
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageMetrics metrics;
+    private final FriendshipGraph friendshipGraph;
+    private final StripedLocks friendshipLocks = new StripedLocks();
+
+    @PostConstruct
+    public void loadFriendships() {
+        String sql = "SELECT user_id, friend_id FROM friendship ORDER BY user_id, friend_id";
+
+        Map<Long, long[]> friends = metrics.record("user.loadFriendships", () ->
+                jdbcTemplate.query(sql, SqlHelper.adjacency("user_id", "friend_id")));
+        friendshipGraph.rebuild(friends);
+    }
 
     @Override
     public Collection<User> findAll() {
-        String sql = "SELECT * FROM users";
-        return jdbcTemplate.query(sql, this::mapRowToUser);
+        return findAll(UserField.ALL);
+    }
+
+    @Override
+    public Collection<User> findAll(Set<UserField> fields) {
+        String sql = selectUsers(fields);
+        return metrics.record("user.findAll", () -> jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToUser(rs, fields)));
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit) {
+        return findPage(afterId, limit, UserField.ALL);
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit, Set<UserField> fields) {
+        String sql = selectUsers(fields) + " WHERE id > ? ORDER BY id LIMIT ?";
+        return metrics.record("user.findPage", () ->
+                jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToUser(rs, fields), afterId, limit));
+    }
+
+    /**
+     * Читает пользователей страницами по id, чтобы соединение не было занято, пока потребитель пишет
+     * их медленному клиенту.
+     */
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        long afterId = 0;
+        Collection<User> page;
+
+        do {
+            page = findPage(afterId, STREAM_PAGE_SIZE);
+            for (User user : page) {
+                consumer.accept(user);
+                afterId = user.getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
     }
 
     @Override
@@ -29,7 +94,7 @@ public class UserDbStorage implements UserStorage {
         String sql = "SELECT * FROM users WHERE id = ?";
 
         try {
-            return jdbcTemplate.queryForObject(sql, this::mapRowToUser, id);
+            return metrics.record("user.getById", () -> jdbcTemplate.queryForObject(sql, this::mapRowToUser, id));
         } catch (EmptyResultDataAccessException e) {
             throw new NotFoundException("Пользователь с id = " + id + " не найден");
         }
@@ -44,14 +109,14 @@ public class UserDbStorage implements UserStorage {
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        jdbcTemplate.update(connection -> {
+        metrics.record("user.create", () -> jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
             ps.setString(1, user.getEmail());
             ps.setString(2, user.getLogin());
             ps.setString(3, user.getName());
             ps.setDate(4, Date.valueOf(user.getBirthday()));
             return ps;
-        },  keyHolder);
+        },  keyHolder));
 
         user.setId(keyHolder.getKey().longValue());
         return user;
@@ -67,50 +132,196 @@ public class UserDbStorage implements UserStorage {
 
         String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
 
-        jdbcTemplate.update(sql, user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(), user.getId());
+        metrics.record("user.update", () ->
+                jdbcTemplate.update(sql, user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(), user.getId()));
 
         return user;
     }
 
+    /**
+     * Запись дружбы и обновление графа идут под блокировкой пары: иначе параллельное удаление
+     * могло бы дойти до графа раньше добавления, и граф сохранил бы связь, которой нет в таблице.
+     */
     @Override
     public void addFriend(Long userId, Long friendId) {
         String sql = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
 
-        jdbcTemplate.update(sql, userId, friendId);
+        friendshipLocks.withLock(new Friendship(userId, friendId), () -> {
+            metrics.record("user.addFriend", () -> jdbcTemplate.update(sql, userId, friendId));
+            friendshipGraph.addFriend(userId, friendId);
+        });
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
         String sql = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
 
-        jdbcTemplate.update(sql, userId, friendId);
+        friendshipLocks.withLock(new Friendship(userId, friendId), () -> {
+            int rows = metrics.record("user.removeFriend", () -> jdbcTemplate.update(sql, userId, friendId));
+
+            if (rows > 0) {
+                friendshipGraph.removeFriend(userId, friendId);
+            }
+        });
+    }
+
+    @Override
+    public List<BatchItemResult<Friendship>> addFriends(List<Friendship> friendships) {
+        Set<Long> userIds = new HashSet<>();
+
+        for (Friendship friendship : friendships) {
+            if (friendship.getUserId() != null && friendship.getFriendId() != null) {
+                userIds.add(friendship.getUserId());
+                userIds.add(friendship.getFriendId());
+            }
+        }
+
+        Set<Long> existingUsers = SqlHelper.findExistingIds(jdbcTemplate, metrics, "users", userIds);
+
+        List<BatchItemResult<Friendship>> results = new ArrayList<>(friendships.size());
+        List<BatchItemResult<Friendship>> pending = new ArrayList<>();
+        Set<Friendship> seen = new HashSet<>();
+
+        for (Friendship friendship : friendships) {
+            if (friendship.getUserId() == null || friendship.getFriendId() == null) {
+                results.add(new BatchItemResult<>(friendship, BatchStatus.INVALID, "Не указан id пользователя или друга"));
+            } else if (!existingUsers.contains(friendship.getUserId())) {
+                results.add(new BatchItemResult<>(friendship, BatchStatus.NOT_FOUND,
+                        "Пользователь с id = " + friendship.getUserId() + " не найден"));
+            } else if (!existingUsers.contains(friendship.getFriendId())) {
+                results.add(new BatchItemResult<>(friendship, BatchStatus.NOT_FOUND,
+                        "Пользователь с id = " + friendship.getFriendId() + " не найден"));
+            } else if (!seen.add(friendship)) {
+                results.add(BatchItemResult.of(friendship, BatchStatus.ALREADY_EXISTS));
+            } else {
+                BatchItemResult<Friendship> result = BatchItemResult.of(friendship, BatchStatus.CREATED);
+                results.add(result);
+                pending.add(result);
+            }
+        }
+
+        List<Friendship> pendingFriendships = pending.stream().map(BatchItemResult::getItem).toList();
+        friendshipLocks.withLocks(pendingFriendships, () -> {
+            insertFriends(pending);
+            return null;
+        });
+        return results;
+    }
+
+    private void insertFriends(List<BatchItemResult<Friendship>> pending) {
+        int[][] counts = transactionTemplate.execute(status -> metrics.record("user.addFriends", () ->
+                jdbcTemplate.batchUpdate(INSERT_FRIEND_SQL, pending, BATCH_SIZE, (ps, result) -> {
+                    ps.setLong(1, result.getItem().getUserId());
+                    ps.setLong(2, result.getItem().getFriendId());
+                    ps.setLong(3, result.getItem().getUserId());
+                    ps.setLong(4, result.getItem().getFriendId());
+                })));
+
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                BatchItemResult<Friendship> result = pending.get(i++);
+
+                if (count == 0) {
+                    result.setStatus(BatchStatus.ALREADY_EXISTS);
+                } else {
+                    friendshipGraph.addFriend(result.getItem().getUserId(), result.getItem().getFriendId());
+                }
+            }
+        }
     }
 
     @Override
     public Collection<User> getFriends(Long userId) {
-        String sql = "SELECT u.* FROM users as u " +
-                "JOIN friendship as f ON u.id = f.friend_id " +
-                "WHERE f.user_id = ?";
-        return jdbcTemplate.query(sql, this::mapRowToUser, userId);
+        return getFriends(userId, UserField.ALL);
+    }
+
+    @Override
+    public Collection<User> getFriends(Long userId, Set<UserField> fields) {
+        return getByIds(friendshipGraph.getFriends(userId), fields);
     }
 
     @Override
     public Collection<User> getCommonFriends(Long userId,  Long friendId) {
-        String sql = "SELECT u.* FROM users as u " +
-                "JOIN friendship as f1 ON u.id = f1.friend_id " +
-                "JOIN friendship as f2 ON u.id = f2.friend_id " +
-                "WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbcTemplate.query(sql, this::mapRowToUser, userId, friendId);
+        return getCommonFriends(userId, friendId, UserField.ALL);
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long friendId, Set<UserField> fields) {
+        return getByIds(friendshipGraph.getCommonFriends(userId, friendId), fields);
+    }
+
+    @Override
+    public Collection<User> getFriendSuggestions(Long userId, int limit) {
+        return getByIds(friendshipGraph.suggestFriends(userId, limit), UserField.ALL);
+    }
+
+    /**
+     * Загружает пользователей в порядке переданных id, одним запросом на каждые {@link SqlHelper#IN_CHUNK_SIZE} id.
+     */
+    private List<User> getByIds(long[] ids, Set<UserField> fields) {
+        Map<Long, User> userById = new HashMap<>(ids.length * 2);
+
+        for (int from = 0; from < ids.length; from += SqlHelper.IN_CHUNK_SIZE) {
+            Object[] chunk = Arrays.stream(ids, from, Math.min(from + SqlHelper.IN_CHUNK_SIZE, ids.length))
+                    .boxed()
+                    .toArray();
+            String sql = selectUsers(fields) + " WHERE id IN (" + SqlHelper.placeholders(chunk.length) + ")";
+            metrics.run("user.getByIds", () -> jdbcTemplate.query(sql, rs -> {
+                User user = mapRowToUser(rs, fields);
+                userById.put(user.getId(), user);
+            }, chunk));
+        }
+
+        List<User> users = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = userById.get(id);
+
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    private static String selectUsers(Set<UserField> fields) {
+        StringBuilder sql = new StringBuilder("SELECT id");
+
+        if (fields.contains(UserField.EMAIL)) {
+            sql.append(", email");
+        }
+        if (fields.contains(UserField.LOGIN)) {
+            sql.append(", login");
+        }
+        if (fields.contains(UserField.NAME)) {
+            sql.append(", name");
+        }
+        if (fields.contains(UserField.BIRTHDAY)) {
+            sql.append(", birthday");
+        }
+        return sql.append(" FROM users").toString();
     }
 
     private User mapRowToUser(ResultSet rs, int rowNum) throws SQLException {
+        return mapRowToUser(rs, UserField.ALL);
+    }
+
+    private User mapRowToUser(ResultSet rs, Set<UserField> fields) throws SQLException {
         User user = new User();
         user.setId(rs.getLong("id"));
-        user.setEmail(rs.getString("email"));
-        user.setLogin(rs.getString("login"));
-        user.setName(rs.getString("name"));
-        user.setBirthday(rs.getDate("birthday").toLocalDate());
 
+        if (fields.contains(UserField.EMAIL)) {
+            user.setEmail(rs.getString("email"));
+        }
+        if (fields.contains(UserField.LOGIN)) {
+            user.setLogin(rs.getString("login"));
+        }
+        if (fields.contains(UserField.NAME)) {
+            user.setName(rs.getString("name"));
+        }
+        if (fields.contains(UserField.BIRTHDAY)) {
+            user.setBirthday(rs.getDate("birthday").toLocalDate());
+        }
         return user;
     }
 }
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Кэш фильмов по id поверх основного хранилища с ограничением по размеру и времени жизни.
+ * Запись вытесняется при обновлении фильма. Лайки в {@link Film} не хранятся,
+ * поэтому их изменение закэшированный фильм не затрагивает.
+ */
+@Repository("cachedFilmStorage")
+@Qualifier("filmStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "db", matchIfMissing = true)
+public class CachedFilmStorage implements FilmStorage {
+    private final FilmStorage delegate;
+    private final Cache<Long, Film> films;
+
+    public CachedFilmStorage(@Qualifier("filmDbStorage") FilmStorage delegate,
+                             @Value("${filmorate.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${filmorate.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.films = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Collection<Film> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Collection<Film> findAll(Set<FilmField> fields) {
+        return delegate.findAll(fields);
+    }
+
+    @Override
+    public Collection<Film> findPage(long afterId, int limit, Set<FilmField> fields) {
+        return delegate.findPage(afterId, limit, fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        delegate.streamAll(consumer);
+    }
+
+    @Override
+    public Film create(Film film) {
+        return delegate.create(film);
+    }
+
+    @Override
+    public Film update(Film newFilm) {
+        try {
+            return delegate.update(newFilm);
+        } finally {
+            films.invalidate(newFilm.getId());
+        }
+    }
+
+    @Override
+    public Film getById(Long id) {
+        return films.get(id, delegate::getById);
+    }
+
+    @Override
+    public void addLike(Long filmId, Long userId) {
+        delegate.addLike(filmId, userId);
+    }
+
+    @Override
+    public void removeLike(Long filmId, Long userId) {
+        delegate.removeLike(filmId, userId);
+    }
+
+    @Override
+    public List<BatchItemResult<Like>> addLikes(List<Like> likes) {
+        return delegate.addLikes(likes);
+    }
+
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year) {
+        return delegate.getMostPopular(count, genreId, year);
+    }
+
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return delegate.getMostPopular(count, genreId, year, fields);
+    }
+
+    @Override
+    public Collection<Film> getTrending(Duration window, int count) {
+        return delegate.getTrending(window, count);
+    }
+
+    @Override
+    public Collection<Film> getRecommendations(Long userId, int limit) {
+        return delegate.getRecommendations(userId, limit);
+    }
+
+    @Override
+    public Collection<Film> search(String query, Set<FilmSearchField> fields, int limit) {
+        return delegate.search(query, fields, limit);
+    }
+
+    public void invalidate(Long id) {
+        films.invalidate(id);
+    }
+
+    public CacheStats getStats() {
+        return films.stats();
+    }
+
+    public long getSize() {
+        return films.estimatedSize();
+    }
+}
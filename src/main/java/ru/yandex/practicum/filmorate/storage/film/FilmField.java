@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля фильма, которые можно запросить выборочно ({@code ?fields=}). Хранилище может не читать
+ * поля вне набора, а ответ их не содержит. {@link #ID} входит в любой набор.
+ */
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    GENRES("genres"),
+    MPA("mpa");
+
+    public static final Set<FilmField> ALL = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
+
+    private final String jsonName;
+
+    FilmField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    public static FilmField fromJsonName(String name) {
+        for (FilmField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.index.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.index.LongTopK;
+import ru.yandex.practicum.filmorate.storage.index.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Лайки в памяти в обе стороны: отсортированные id фильмов у пользователя и id пользователей у фильма.
+ * Используется для рекомендаций: фильмы, которые понравились пользователям с похожими лайками.
+ */
+@Component
+public class FilmLikesIndex {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+    /**
+     * Сколько похожих пользователей учитывается в рекомендации.
+     */
+    static final int SIMILAR_USERS = 50;
+    /**
+     * Сколько лайков других пользователей просматривается при поиске похожих.
+     */
+    static final int MAX_SCANNED_LIKES = 1_000_000;
+    /**
+     * Начиная с такого числа лайков у пользователя похожие ищутся параллельно.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private final Map<Long, long[]> filmsByUser = new HashMap<>();
+    private final Map<Long, long[]> usersByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Перестраивает индекс по отсортированным массивам id фильмов каждого пользователя.
+     */
+    public void rebuild(Map<Long, long[]> likedFilmsByUser) {
+        Map<Long, Integer> likesPerFilm = new HashMap<>();
+        likedFilmsByUser.values().forEach(films -> {
+            for (long filmId : films) {
+                likesPerFilm.merge(filmId, 1, Integer::sum);
+            }
+        });
+
+        Map<Long, long[]> users = new HashMap<>(likesPerFilm.size() * 2);
+        Map<Long, Integer> filled = new HashMap<>(likesPerFilm.size() * 2);
+        likesPerFilm.forEach((filmId, count) -> users.put(filmId, new long[count]));
+
+        likedFilmsByUser.keySet().stream().sorted().forEach(userId -> {
+            for (long filmId : likedFilmsByUser.get(userId)) {
+                users.get(filmId)[filled.merge(filmId, 1, Integer::sum) - 1] = userId;
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            filmsByUser.putAll(likedFilmsByUser);
+            usersByFilm.clear();
+            usersByFilm.putAll(users);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void likeAdded(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.put(userId, SortedLongArrays.insert(filmsByUser.getOrDefault(userId, EMPTY), filmId));
+            usersByFilm.put(filmId, SortedLongArrays.insert(usersByFilm.getOrDefault(filmId, EMPTY), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void likeRemoved(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            removeValue(filmsByUser, userId, filmId);
+            removeValue(usersByFilm, filmId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLiked(long filmId, long userId) {
+        return SortedLongArrays.contains(getLikedFilms(userId), filmId);
+    }
+
+    /**
+     * Отсортированные id фильмов, которые лайкнул пользователь. Массив нельзя изменять.
+     */
+    public long[] getLikedFilms(long userId) {
+        lock.readLock().lock();
+        try {
+            return filmsByUser.getOrDefault(userId, EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Фильмы, которых нет у пользователя, но которые лайкнули {@link #SIMILAR_USERS} пользователей
+     * с наибольшим числом общих лайков. Счёт фильма — сумма числа общих лайков лайкнувших его
+     * похожих пользователей; при равном счёте выше фильм с меньшим id.
+     */
+    public long[] recommend(long userId, int limit) {
+        long[] liked = getLikedFilms(userId);
+
+        if (liked.length == 0 || limit <= 0) {
+            return EMPTY;
+        }
+
+        long[][] likedBy = new long[liked.length][];
+        lock.readLock().lock();
+        try {
+            long budget = MAX_SCANNED_LIKES;
+
+            for (int i = 0; i < liked.length; i++) {
+                long[] users = usersByFilm.getOrDefault(liked[i], EMPTY);
+                likedBy[i] = users.length <= budget ? users : Arrays.copyOf(users, (int) budget);
+                budget -= likedBy[i].length;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LongIntCounter overlap = LongIntCounter.countAll(likedBy, PARALLEL_THRESHOLD);
+        LongTopK similarTop = new LongTopK(SIMILAR_USERS);
+        overlap.forEach((otherId, common) -> {
+            if (otherId != userId) {
+                similarTop.offer(otherId, common);
+            }
+        });
+        long[] similar = similarTop.drain();
+
+        LongIntCounter scores = new LongIntCounter(similar.length * 16);
+        for (long otherId : similar) {
+            int weight = overlap.get(otherId);
+
+            for (long filmId : getLikedFilms(otherId)) {
+                if (!SortedLongArrays.contains(liked, filmId)) {
+                    scores.add(filmId, weight);
+                }
+            }
+        }
+
+        LongTopK top = new LongTopK(limit);
+        scores.forEach(top::offer);
+        return top.drain();
+    }
+
+    private static void removeValue(Map<Long, long[]> index, long key, long value) {
+        long[] updated = SortedLongArrays.remove(index.getOrDefault(key, EMPTY), value);
+
+        if (updated.length == 0) {
+            index.remove(key);
+        } else {
+            index.put(key, updated);
+        }
+    }
+}
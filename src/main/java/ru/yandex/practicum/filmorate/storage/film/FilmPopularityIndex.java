@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счётчики лайков по фильмам и упорядоченные по популярности списки — общий,
+ * по каждому жанру, году выхода и паре «жанр, год», — которые обновляются инкрементально
+ * при добавлении и удалении лайков. Поэтому топ с любым фильтром читается так же, как общий.
+ */
+@Component
+public class FilmPopularityIndex {
+    private static final Comparator<Entry> BY_POPULARITY = Comparator
+            .comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Attributes> attributes = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, NavigableSet<Entry>> rankingByGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByYear = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> rankingByGenreAndYear = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Год выхода (может быть {@code null}) и жанры фильма, определяющие, в какие списки он попадает.
+     */
+    public record Attributes(Integer year, Set<Integer> genreIds) {
+        public static final Attributes NONE = new Attributes(null, Set.of());
+    }
+
+    public void rebuild(Map<Long, Long> likesByFilm, Map<Long, Attributes> attributesByFilm) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            attributes.clear();
+            ranking.clear();
+            rankingByGenre.clear();
+            rankingByYear.clear();
+            rankingByGenreAndYear.clear();
+            likesByFilm.forEach((filmId, likes) ->
+                    put(filmId, likes, attributesByFilm.getOrDefault(filmId, Attributes.NONE)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм без лайков или переносит уже известный фильм в списки по новым жанрам и году.
+     */
+    public void register(long filmId, Attributes filmAttributes) {
+        lock.writeLock().lock();
+        try {
+            Entry current = entries.get(filmId);
+            long likes = current != null ? current.likes() : 0;
+
+            if (current != null) {
+                remove(current);
+            }
+            put(filmId, likes, filmAttributes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void likeAdded(long filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    public void likeRemoved(long filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    /**
+     * Известен ли индексу фильм: сюда попадает каждый созданный фильм, в том числе без лайков.
+     */
+    public boolean contains(long filmId) {
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getLikes(long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry != null ? entry.likes() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> getTop(int count) {
+        return getTop(count, null, null);
+    }
+
+    /**
+     * Самые популярные фильмы, при необходимости только указанного жанра и (или) года.
+     */
+    public List<Long> getTop(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> source;
+
+            if (genreId != null && year != null) {
+                source = rankingByGenreAndYear.get(genreYearKey(genreId, year));
+            } else if (genreId != null) {
+                source = rankingByGenre.get(genreId);
+            } else if (year != null) {
+                source = rankingByYear.get(year);
+            } else {
+                source = ranking;
+            }
+
+            if (source == null) {
+                return new ArrayList<>();
+            }
+
+            List<Long> top = new ArrayList<>(Math.min(Math.max(count, 0), source.size()));
+            for (Entry entry : source) {
+                if (top.size() >= count) {
+                    break;
+                }
+                top.add(entry.filmId());
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void changeLikes(long filmId, long delta) {
+        lock.writeLock().lock();
+        try {
+            Entry current = entries.get(filmId);
+            long likes = current != null ? current.likes() : 0;
+            Attributes filmAttributes = attributes.getOrDefault(filmId, Attributes.NONE);
+
+            if (current != null) {
+                remove(current);
+            }
+            put(filmId, Math.max(0, likes + delta), filmAttributes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(long filmId, long likes, Attributes filmAttributes) {
+        Entry entry = new Entry(filmId, likes);
+        entries.put(filmId, entry);
+        attributes.put(filmId, filmAttributes);
+        ranking.add(entry);
+
+        for (Integer genreId : filmAttributes.genreIds()) {
+            rankingByGenre.computeIfAbsent(genreId, key -> new TreeSet<>(BY_POPULARITY)).add(entry);
+
+            if (filmAttributes.year() != null) {
+                rankingByGenreAndYear.computeIfAbsent(genreYearKey(genreId, filmAttributes.year()),
+                        key -> new TreeSet<>(BY_POPULARITY)).add(entry);
+            }
+        }
+        if (filmAttributes.year() != null) {
+            rankingByYear.computeIfAbsent(filmAttributes.year(), key -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        Attributes filmAttributes = attributes.getOrDefault(entry.filmId(), Attributes.NONE);
+        ranking.remove(entry);
+
+        for (Integer genreId : filmAttributes.genreIds()) {
+            removeFromPartition(rankingByGenre, genreId, entry);
+
+            if (filmAttributes.year() != null) {
+                removeFromPartition(rankingByGenreAndYear, genreYearKey(genreId, filmAttributes.year()), entry);
+            }
+        }
+        if (filmAttributes.year() != null) {
+            removeFromPartition(rankingByYear, filmAttributes.year(), entry);
+        }
+    }
+
+    private static long genreYearKey(int genreId, int year) {
+        return (long) genreId << 32 | (year & 0xFFFFFFFFL);
+    }
+
+    private static <K> void removeFromPartition(Map<K, NavigableSet<Entry>> partitions, K key, Entry entry) {
+        NavigableSet<Entry> partition = partitions.get(key);
+
+        if (partition != null) {
+            partition.remove(entry);
+
+            if (partition.isEmpty()) {
+                partitions.remove(key);
+            }
+        }
+    }
+
+    private record Entry(long filmId, long likes) {
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.function.Function;
+
+/**
+ * Поля фильма, по которым работает поиск, и их вес при ранжировании.
+ */
+public enum FilmSearchField {
+    TITLE(3, Film::getName),
+    DESCRIPTION(1, Film::getDescription);
+
+    final int weight;
+    private final Function<Film, String> getter;
+
+    FilmSearchField(int weight, Function<Film, String> getter) {
+        this.weight = weight;
+        this.getter = getter;
+    }
+
+    String textOf(Film film) {
+        return getter.apply(film);
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.index.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.index.LongTopK;
+import ru.yandex.practicum.filmorate.storage.index.SortedLongArrays;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по названию и описанию фильмов: для каждого слова отсортированный
+ * массив id фильмов. Слова приводятся к нижнему регистру, «ё» заменяется на «е»,
+ * каждое слово запроса ищется как префикс.
+ */
+@Component
+public class FilmSearchIndex {
+    private static final int EXACT_MATCH_BONUS = 2;
+
+    private final EnumMap<FilmSearchField, NavigableMap<String, long[]>> postings =
+            new EnumMap<>(FilmSearchField.class);
+    private final EnumMap<FilmSearchField, Map<Long, Set<String>>> termsByFilm = new EnumMap<>(FilmSearchField.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FilmSearchIndex() {
+        for (FilmSearchField field : FilmSearchField.values()) {
+            postings.put(field, new TreeMap<>());
+            termsByFilm.put(field, new HashMap<>());
+        }
+    }
+
+    /**
+     * Перестраивает индекс. Фильмы должны идти по возрастанию id.
+     */
+    public void rebuild(List<Film> films) {
+        EnumMap<FilmSearchField, Map<String, PostingsBuilder>> builders = new EnumMap<>(FilmSearchField.class);
+        EnumMap<FilmSearchField, Map<Long, Set<String>>> terms = new EnumMap<>(FilmSearchField.class);
+
+        for (FilmSearchField field : FilmSearchField.values()) {
+            Map<String, PostingsBuilder> fieldBuilders = new HashMap<>();
+            Map<Long, Set<String>> fieldTerms = new HashMap<>(films.size() * 2);
+
+            for (Film film : films) {
+                Set<String> filmTerms = tokenize(field.textOf(film));
+                fieldTerms.put(film.getId(), filmTerms);
+
+                for (String term : filmTerms) {
+                    fieldBuilders.computeIfAbsent(term, t -> new PostingsBuilder()).add(film.getId());
+                }
+            }
+            builders.put(field, fieldBuilders);
+            terms.put(field, fieldTerms);
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (FilmSearchField field : FilmSearchField.values()) {
+                NavigableMap<String, long[]> fieldPostings = postings.get(field);
+                fieldPostings.clear();
+                builders.get(field).forEach((term, builder) -> fieldPostings.put(term, builder.build()));
+                termsByFilm.get(field).clear();
+                termsByFilm.get(field).putAll(terms.get(field));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его слова, если фильм уже проиндексирован.
+     */
+    public void put(Film film) {
+        long filmId = film.getId();
+
+        lock.writeLock().lock();
+        try {
+            for (FilmSearchField field : FilmSearchField.values()) {
+                NavigableMap<String, long[]> fieldPostings = postings.get(field);
+                Set<String> newTerms = tokenize(field.textOf(film));
+                Set<String> oldTerms = termsByFilm.get(field).put(filmId, newTerms);
+
+                if (oldTerms != null) {
+                    for (String term : oldTerms) {
+                        if (!newTerms.contains(term)) {
+                            long[] ids = SortedLongArrays.remove(fieldPostings.getOrDefault(term,
+                                    SortedLongArrays.EMPTY), filmId);
+
+                            if (ids.length == 0) {
+                                fieldPostings.remove(term);
+                            } else {
+                                fieldPostings.put(term, ids);
+                            }
+                        }
+                    }
+                }
+                for (String term : newTerms) {
+                    if (oldTerms == null || !oldTerms.contains(term)) {
+                        fieldPostings.put(term, SortedLongArrays.insert(fieldPostings.getOrDefault(term,
+                                SortedLongArrays.EMPTY), filmId));
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id фильмов, у которых в выбранных полях есть слова, начинающиеся с каждого слова запроса.
+     * Счёт фильма — сумма весов полей по совпавшим словам, точное совпадение слова весит больше;
+     * при равном счёте выше фильм с меньшим id.
+     */
+    public long[] search(String query, Set<FilmSearchField> fields, int limit) {
+        Set<String> tokens = tokenize(query);
+
+        if (tokens.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return SortedLongArrays.EMPTY;
+        }
+
+        LongIntCounter scores = null;
+
+        lock.readLock().lock();
+        try {
+            for (String token : tokens) {
+                LongIntCounter tokenScores = scoreToken(token, fields);
+
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    LongIntCounter matched = new LongIntCounter(Math.min(scores.size(), tokenScores.size()));
+                    LongIntCounter previous = scores;
+                    tokenScores.forEach((filmId, score) -> {
+                        int previousScore = previous.get(filmId);
+
+                        if (previousScore > 0) {
+                            matched.add(filmId, previousScore + score);
+                        }
+                    });
+                    scores = matched;
+                }
+
+                if (scores.size() == 0) {
+                    return SortedLongArrays.EMPTY;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LongTopK top = new LongTopK(limit);
+        scores.forEach(top::offer);
+        return top.drain();
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+
+        if (text == null) {
+            return tokens;
+        }
+
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private LongIntCounter scoreToken(String token, Set<FilmSearchField> fields) {
+        LongIntCounter scores = new LongIntCounter(16);
+
+        for (FilmSearchField field : fields) {
+            NavigableMap<String, long[]> matches = postings.get(field)
+                    .subMap(token, true, token + Character.MAX_VALUE, false);
+
+            matches.forEach((term, ids) -> {
+                int weight = term.length() == token.length() ? field.weight * EXACT_MATCH_BONUS : field.weight;
+
+                for (long filmId : ids) {
+                    scores.add(filmId, weight);
+                }
+            });
+        }
+        return scores;
+    }
+
+    private static final class PostingsBuilder {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        long[] build() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
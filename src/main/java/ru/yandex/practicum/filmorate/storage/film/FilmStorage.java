@@ -1,12 +1,36 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    Collection<Film> findPage(long afterId, int limit);
+
+    /**
+     * Как {@link #findAll()}: достаточно заполнить поля {@code fields}, остальные могут остаться пустыми.
+     */
+    default Collection<Film> findAll(Set<FilmField> fields) {
+        return findAll();
+    }
+
+    /**
+     * Как {@link #findPage(long, int)}: достаточно заполнить поля {@code fields}, остальные могут остаться пустыми.
+     */
+    default Collection<Film> findPage(long afterId, int limit, Set<FilmField> fields) {
+        return findPage(afterId, limit);
+    }
+
+    void streamAll(Consumer<Film> consumer);
+
     Film create(Film film);
 
     Film update(Film newFilm);
@@ -17,5 +41,24 @@ public interface FilmStorage {
 
     void removeLike(Long filmId, Long userId);
 
-    Collection<Film> getMostPopular(int count);
+    List<BatchItemResult<Like>> addLikes(List<Like> likes);
+
+    Collection<Film> getMostPopular(int count, Integer genreId, Integer year);
+
+    /**
+     * Как {@link #getMostPopular(int, Integer, Integer)}: достаточно заполнить поля {@code fields},
+     * остальные могут остаться пустыми.
+     */
+    default Collection<Film> getMostPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return getMostPopular(count, genreId, year);
+    }
+
+    /**
+     * Фильмы с наибольшим числом лайков за последние {@code window}.
+     */
+    Collection<Film> getTrending(Duration window, int count);
+
+    Collection<Film> getRecommendations(Long userId, int limit);
+
+    Collection<Film> search(String query, Set<FilmSearchField> fields, int limit);
 }
@@ -0,0 +1,393 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Лайки за последние часы и дни по скользящим окнам из {@code filmorate.trending.windows}.
+ * Время делится на корзины длиной {@code filmorate.trending.bucket}; в корзине хранится, сколько
+ * лайков получил каждый фильм. Окно — это последние {@code window / bucket} корзин, включая текущую,
+ * поэтому фактическая длина окна меньше заданной не больше чем на одну корзину.
+ *
+ * <p>Для каждого окна счётчики фильмов упорядочены списком групп с одинаковым числом лайков:
+ * лайк переносит фильм в соседнюю группу за O(1), а топ-K читается с головы списка за O(K).
+ * Когда корзина выходит из окна, её счётчики вычитаются из окна — база при этом не читается.
+ * Сдвиг окон выполняется при каждом обращении и по таймеру раз в корзину.
+ */
+@Component
+public class FilmTrendingIndex {
+    private final long bucketMillis;
+    private final List<Duration> windows;
+    private final int[] windowBuckets;
+    private final Ranking[] rankings;
+    private final Bucket[] buckets;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentBucket = Long.MIN_VALUE;
+    private ScheduledExecutorService ticker;
+
+    @Autowired
+    public FilmTrendingIndex(@Value("${filmorate.trending.bucket:5m}") Duration bucket,
+                             @Value("${filmorate.trending.windows:1h,24h,7d}") List<Duration> windows) {
+        if (bucket.toMillis() <= 0 || windows.isEmpty()) {
+            throw new IllegalArgumentException("Нужны положительная длина корзины и хотя бы одно окно");
+        }
+
+        this.bucketMillis = bucket.toMillis();
+        this.windows = windows.stream().distinct().sorted().toList();
+        this.windowBuckets = new int[this.windows.size()];
+        this.rankings = new Ranking[this.windows.size()];
+
+        for (int i = 0; i < windowBuckets.length; i++) {
+            Duration window = this.windows.get(i);
+
+            if (window.toMillis() % bucketMillis != 0 || window.toMillis() < bucketMillis) {
+                throw new IllegalArgumentException("Окно " + window + " не кратно корзине " + bucket);
+            }
+            windowBuckets[i] = Math.toIntExact(window.toMillis() / bucketMillis);
+            rankings[i] = new Ranking();
+        }
+        this.buckets = new Bucket[windowBuckets[windowBuckets.length - 1]];
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "film-trending-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()), bucketMillis, bucketMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    /**
+     * Самое длинное окно: лайки старше него индексу не нужны.
+     */
+    public Duration getMaxWindow() {
+        return windows.getLast();
+    }
+
+    /**
+     * Заполняет индекс заново, например лайками из базы за {@link #getMaxWindow()}.
+     */
+    public void rebuild(Map<Long, long[]> likedAtByFilm, long now) {
+        lock.lock();
+        try {
+            Arrays.fill(buckets, null);
+            for (Ranking ranking : rankings) {
+                ranking.clear();
+            }
+            currentBucket = now / bucketMillis;
+            likedAtByFilm.forEach((filmId, likedAt) -> {
+                for (long time : likedAt) {
+                    add(filmId, time / bucketMillis, 1);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void likeAdded(long filmId, long likedAt) {
+        lock.lock();
+        try {
+            long bucket = likedAt / bucketMillis;
+
+            advanceTo(bucket);
+            add(filmId, bucket, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Снимает лайк, поставленный в {@code likedAt}. Если время неизвестно ({@code null}),
+     * лайк снимается из самой свежей корзины, где у фильма есть лайки.
+     */
+    public void likeRemoved(long filmId, Long likedAt) {
+        lock.lock();
+        try {
+            if (likedAt != null) {
+                add(filmId, likedAt / bucketMillis, -1);
+                return;
+            }
+
+            for (long bucket = currentBucket; bucket > currentBucket - buckets.length; bucket--) {
+                Bucket stored = bucketAt(bucket);
+
+                if (stored != null && stored.likes.getOrDefault(filmId, 0) > 0) {
+                    add(filmId, bucket, -1);
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Фильмы с наибольшим числом лайков за окно {@code window}; при равенстве раньше идёт фильм,
+     * который набрал это число первым. Окно должно быть одним из {@link #getWindows()}.
+     */
+    public List<Long> getTop(Duration window, int count, long now) {
+        int windowIndex = windows.indexOf(window);
+
+        if (windowIndex < 0) {
+            throw new IllegalArgumentException("Окно " + window + " не поддерживается");
+        }
+
+        lock.lock();
+        try {
+            advanceTo(now / bucketMillis);
+            return rankings[windowIndex].top(count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLikes(long filmId, Duration window, long now) {
+        int windowIndex = windows.indexOf(window);
+
+        lock.lock();
+        try {
+            advanceTo(now / bucketMillis);
+            return windowIndex >= 0 ? rankings[windowIndex].count(filmId) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void advance(long now) {
+        lock.lock();
+        try {
+            advanceTo(now / bucketMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Меняет счётчик фильма в корзине и во всех окнах, которые её покрывают.
+     * Корзины вне самого длинного окна и будущие корзины пропускаются.
+     */
+    private void add(long filmId, long bucket, int delta) {
+        if (bucket > currentBucket || bucket <= currentBucket - buckets.length) {
+            return;
+        }
+
+        Bucket stored = bucketAt(bucket);
+        if (stored == null) {
+            if (delta < 0) {
+                return;
+            }
+            stored = new Bucket(bucket);
+            buckets[slot(bucket)] = stored;
+        }
+
+        int likes = stored.likes.getOrDefault(filmId, 0) + delta;
+        if (likes < 0) {
+            return;
+        }
+        if (likes == 0) {
+            stored.likes.remove(filmId);
+        } else {
+            stored.likes.put(filmId, likes);
+        }
+
+        for (int i = 0; i < rankings.length; i++) {
+            if (bucket > currentBucket - windowBuckets[i]) {
+                rankings[i].change(filmId, delta);
+            }
+        }
+    }
+
+    /**
+     * Сдвигает окна до корзины {@code bucket}: корзины, вышедшие из окна, вычитаются из его счётчиков.
+     * После простоя дольше самого длинного окна индекс просто очищается.
+     */
+    private void advanceTo(long bucket) {
+        if (bucket <= currentBucket) {
+            return;
+        }
+        if (currentBucket == Long.MIN_VALUE || bucket - currentBucket >= buckets.length) {
+            Arrays.fill(buckets, null);
+            for (Ranking ranking : rankings) {
+                ranking.clear();
+            }
+            currentBucket = bucket;
+            return;
+        }
+
+        for (long next = currentBucket + 1; next <= bucket; next++) {
+            for (int i = 0; i < rankings.length; i++) {
+                Bucket expired = bucketAt(next - windowBuckets[i]);
+
+                if (expired != null) {
+                    Ranking ranking = rankings[i];
+                    expired.likes.forEach((filmId, likes) -> ranking.change(filmId, -likes));
+                }
+            }
+            buckets[slot(next)] = null;
+        }
+        currentBucket = bucket;
+    }
+
+    private Bucket bucketAt(long bucket) {
+        Bucket stored = buckets[slot(bucket)];
+        return stored != null && stored.index == bucket ? stored : null;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets.length);
+    }
+
+    private static final class Bucket {
+        private final long index;
+        private final Map<Long, Integer> likes = new HashMap<>();
+
+        private Bucket(long index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Фильмы окна, сгруппированные по числу лайков. Группы связаны в список по убыванию,
+     * поэтому изменение счётчика сдвигает фильм на столько групп, на сколько изменился счётчик, не больше.
+     */
+    private static final class Ranking {
+        private final Map<Long, Group> groupByFilm = new HashMap<>();
+        private Group highest;
+        private Group lowest;
+
+        void change(long filmId, long delta) {
+            Group current = groupByFilm.remove(filmId);
+            long likes = (current != null ? current.likes : 0) + delta;
+            Group higher;
+            Group lower;
+
+            if (current == null) {
+                higher = lowest;
+                lower = null;
+            } else {
+                current.films.remove(filmId);
+
+                if (current.films.isEmpty()) {
+                    higher = current.higher;
+                    lower = current.lower;
+                    unlink(current);
+                } else if (delta > 0) {
+                    higher = current.higher;
+                    lower = current;
+                } else {
+                    higher = current;
+                    lower = current.lower;
+                }
+            }
+
+            if (likes <= 0) {
+                return;
+            }
+            while (higher != null && higher.likes < likes) {
+                lower = higher;
+                higher = higher.higher;
+            }
+            while (lower != null && lower.likes > likes) {
+                higher = lower;
+                lower = lower.lower;
+            }
+
+            Group target;
+            if (higher != null && higher.likes == likes) {
+                target = higher;
+            } else if (lower != null && lower.likes == likes) {
+                target = lower;
+            } else {
+                target = new Group(likes);
+                target.higher = higher;
+                target.lower = lower;
+                if (higher != null) {
+                    higher.lower = target;
+                } else {
+                    highest = target;
+                }
+                if (lower != null) {
+                    lower.higher = target;
+                } else {
+                    lowest = target;
+                }
+            }
+            target.films.add(filmId);
+            groupByFilm.put(filmId, target);
+        }
+
+        long count(long filmId) {
+            Group group = groupByFilm.get(filmId);
+            return group != null ? group.likes : 0;
+        }
+
+        List<Long> top(int count) {
+            List<Long> top = new ArrayList<>(Math.min(Math.max(count, 0), groupByFilm.size()));
+
+            for (Group group = highest; group != null && top.size() < count; group = group.lower) {
+                for (Long filmId : group.films) {
+                    if (top.size() >= count) {
+                        break;
+                    }
+                    top.add(filmId);
+                }
+            }
+            return top;
+        }
+
+        void clear() {
+            groupByFilm.clear();
+            highest = null;
+            lowest = null;
+        }
+
+        private void unlink(Group group) {
+            if (group.higher != null) {
+                group.higher.lower = group.lower;
+            } else {
+                highest = group.lower;
+            }
+            if (group.lower != null) {
+                group.lower.higher = group.higher;
+            } else {
+                lowest = group.higher;
+            }
+        }
+    }
+
+    private static final class Group {
+        private final long likes;
+        private final Set<Long> films = new LinkedHashSet<>();
+        private Group higher;
+        private Group lower;
+
+        private Group(long likes) {
+            this.likes = likes;
+        }
+    }
+}
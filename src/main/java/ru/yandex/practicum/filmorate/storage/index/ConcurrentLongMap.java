@@ -0,0 +1,249 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Потокобезопасная карта long → значение без упаковки ключей в объекты. Ключи распределены
+ * по сегментам с открытой адресацией, у каждого сегмента своя блокировка, поэтому операции
+ * над разными ключами почти не мешают друг другу. Ключ {@code -1} зарезервирован под пустую ячейку.
+ */
+public final class ConcurrentLongMap<V> {
+    private static final long EMPTY = -1;
+    private static final int SEGMENTS = 64;
+
+    private final Segment<V>[] segments;
+
+    @FunctionalInterface
+    public interface Remapping<V> {
+        /**
+         * @param current текущее значение или {@code null}, если ключа нет
+         * @return новое значение; {@code null} удаляет ключ
+         */
+        V apply(long key, V current);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap(int expectedSize) {
+        segments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(expectedSize / SEGMENTS);
+        }
+    }
+
+    public V get(long key) {
+        if (key == EMPTY) {
+            return null;
+        }
+
+        Segment<V> segment = segmentFor(key);
+        segment.lock.readLock().lock();
+        try {
+            return segment.get(key);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public V put(long key, V value) {
+        return compute(key, (k, current) -> value);
+    }
+
+    /**
+     * Атомарно пересчитывает значение ключа. Функция выполняется под блокировкой сегмента,
+     * так что изменения одного ключа строго упорядочены; внутри неё нельзя обращаться к этой же карте.
+     */
+    public V compute(long key, Remapping<V> remapping) {
+        checkKey(key);
+
+        Segment<V> segment = segmentFor(key);
+        segment.lock.writeLock().lock();
+        try {
+            V updated = remapping.apply(key, segment.get(key));
+
+            if (updated == null) {
+                segment.remove(key);
+            } else {
+                segment.put(key, updated);
+            }
+            return updated;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+
+        for (Segment<V> segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Обходит карту посегментно; каждый сегмент читается под своей блокировкой, порядок ключей не определён.
+     */
+    public void forEach(EntryConsumer<V> consumer) {
+        for (Segment<V> segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                segment.forEach(consumer);
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.lock.writeLock().lock();
+            try {
+                segment.clear();
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return segments[(hash(key) >>> 16) & (SEGMENTS - 1)];
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Ключ " + EMPTY + " зарезервирован");
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Segment<V> {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private long[] keys;
+        private Object[] values;
+        private int size;
+
+        Segment(int expectedSize) {
+            allocate(Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key) {
+            int mask = keys.length - 1;
+
+            for (int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return (V) values[slot];
+                }
+            }
+            return null;
+        }
+
+        void put(long key, V value) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+
+            if (++size * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+
+            while (keys[slot] != key) {
+                if (keys[slot] == EMPTY) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            // обратный сдвиг: следующие элементы цепочки переносятся в освободившуюся ячейку
+            int next = (slot + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int home = hash(keys[next]) & mask;
+
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[slot] = EMPTY;
+            values[slot] = null;
+            size--;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(EntryConsumer<V> consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    consumer.accept(keys[i], (V) values[i]);
+                }
+            }
+        }
+
+        void clear() {
+            allocate(8);
+            size = 0;
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            int mask = capacity - 1;
+            allocate(capacity);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = hash(oldKeys[i]) & mask;
+
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Счётчик long → int на открытой адресации без упаковки ключей в объекты.
+ * Ключ {@code -1} зарезервирован под пустую ячейку. Не потокобезопасен.
+ */
+public final class LongIntCounter {
+    private static final long EMPTY = -1;
+    private static final int PARALLEL_CHUNK = 64;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.min(Math.max(expectedSize, 8), 1 << 28) * 2 - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Считает, сколько раз каждый id встречается в списках. Начиная с {@code parallelThreshold}
+     * списков они обходятся параллельно кусками со своим счётчиком, которые затем складываются.
+     */
+    public static LongIntCounter countAll(long[][] lists, int parallelThreshold) {
+        if (lists.length < parallelThreshold || PARALLELISM < 2) {
+            return count(lists, 0, lists.length);
+        }
+
+        return IntStream.range(0, (lists.length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK)
+                .parallel()
+                .mapToObj(chunk -> count(lists, chunk * PARALLEL_CHUNK,
+                        Math.min((chunk + 1) * PARALLEL_CHUNK, lists.length)))
+                .reduce((left, right) -> {
+                    left.addAll(right);
+                    return left;
+                })
+                .orElseGet(() -> new LongIntCounter(0));
+    }
+
+    private static LongIntCounter count(long[][] lists, int from, int to) {
+        int total = 0;
+        for (int i = from; i < to; i++) {
+            total += lists[i].length;
+        }
+
+        LongIntCounter counter = new LongIntCounter(total);
+        for (int i = from; i < to; i++) {
+            for (long key : lists[i]) {
+                counter.increment(key);
+            }
+        }
+        return counter;
+    }
+
+    public void increment(long key) {
+        add(key, 1);
+    }
+
+    public void add(long key, int delta) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        counts[slot] = delta;
+
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    public void addAll(LongIntCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public interface EntryConsumer {
+        void accept(long key, int count);
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                add(oldKeys[i], oldCounts[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.PriorityQueue;
+
+/**
+ * Отбор k id с наибольшим счётом; при равном счёте выше id меньше.
+ * Куча хранит не больше k элементов, кандидаты хуже худшего отобранного отбрасываются без аллокаций.
+ */
+public final class LongTopK {
+    private final int k;
+    // на вершине кучи худший из отобранных: {id, счёт}
+    private final PriorityQueue<long[]> heap;
+
+    public LongTopK(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.max(k, 0) + 1, (a, b) -> a[1] != b[1]
+                ? Long.compare(a[1], b[1])
+                : Long.compare(b[0], a[0]));
+    }
+
+    /**
+     * Пройдёт ли кандидат в текущий топ. Позволяет не делать дорогих проверок для заведомо худших.
+     */
+    public boolean accepts(long id, long score) {
+        if (k <= 0) {
+            return false;
+        }
+        if (heap.size() < k) {
+            return true;
+        }
+
+        long[] worst = heap.peek();
+        return score > worst[1] || score == worst[1] && id < worst[0];
+    }
+
+    public void offer(long id, long score) {
+        if (!accepts(id, score)) {
+            return;
+        }
+
+        heap.add(new long[]{id, score});
+        if (heap.size() > k) {
+            heap.poll();
+        }
+    }
+
+    /**
+     * Отобранные id по убыванию счёта. Очищает накопленный топ.
+     */
+    public long[] drain() {
+        long[] result = new long[heap.size()];
+
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll()[0];
+        }
+        return result;
+    }
+}
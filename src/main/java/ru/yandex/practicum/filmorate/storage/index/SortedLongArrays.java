@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+
+/**
+ * Операции над отсортированными по возрастанию массивами id без повторов.
+ * Исходные массивы не изменяются: при вставке и удалении возвращается новый массив.
+ */
+public final class SortedLongArrays {
+    public static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+    }
+
+    /**
+     * Возвращает массив с добавленным значением или тот же массив, если значение уже есть.
+     */
+    public static long[] insert(long[] array, long value) {
+        int pos = Arrays.binarySearch(array, value);
+
+        if (pos >= 0) {
+            return array;
+        }
+
+        int insertAt = -pos - 1;
+        long[] updated = new long[array.length + 1];
+        System.arraycopy(array, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(array, insertAt, updated, insertAt + 1, array.length - insertAt);
+        return updated;
+    }
+
+    /**
+     * Возвращает массив без значения или тот же массив, если значения не было.
+     */
+    public static long[] remove(long[] array, long value) {
+        int pos = Arrays.binarySearch(array, value);
+
+        if (pos < 0) {
+            return array;
+        }
+        if (array.length == 1) {
+            return EMPTY;
+        }
+
+        long[] updated = new long[array.length - 1];
+        System.arraycopy(array, 0, updated, 0, pos);
+        System.arraycopy(array, pos + 1, updated, pos, array.length - pos - 1);
+        return updated;
+    }
+
+    public static boolean contains(long[] array, long value) {
+        return Arrays.binarySearch(array, value) >= 0;
+    }
+
+    /**
+     * Пересечение слиянием за O(n + m).
+     */
+    public static long[] intersect(long[] first, long[] second) {
+        long[] common = new long[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+}
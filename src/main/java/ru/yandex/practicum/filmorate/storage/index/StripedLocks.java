@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Блокировки по ключу: изменения с одним ключом (фильм, пользователь, пара) выполняются
+ * по одному, с разными — параллельно, если ключи не попали в одну полосу. Несколько блокировок
+ * берутся по возрастанию номера, так что пачки не блокируют друг друга взаимно.
+ * Это {@link ReentrantLock}, поэтому под ними можно ждать базу и на виртуальных потоках.
+ */
+public final class StripedLocks {
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public StripedLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(Object key, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(Object key, Runnable action) {
+        withLock(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T withLocks(Collection<?> keys, Supplier<T> action) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Object key : keys) {
+            stripes.add(stripe(key));
+        }
+
+        int locked = 0;
+        try {
+            for (int stripe : stripes) {
+                locks[stripe].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int stripe : stripes) {
+                if (locked-- == 0) {
+                    break;
+                }
+                locks[stripe].unlock();
+            }
+        }
+    }
+
+    private static int stripe(Object key) {
+        return Math.floorMod(Objects.hashCode(key) * 0x9E3779B9, STRIPES);
+    }
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+/**
+ * Запись журнала: смещение записи, смещение следующей за ней, время записи в миллисекундах
+ * от эпохи и само изменение. Чтение продолжается с {@code nextOffset}.
+ */
+public record JournalEntry(long offset, long nextOffset, long timestamp, Mutation mutation) {
+}
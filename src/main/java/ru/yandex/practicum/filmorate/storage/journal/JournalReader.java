@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.time.Duration;
+
+/**
+ * Последовательное чтение журнала с заданного смещения. Дойдя до конца, читатель не закрывается:
+ * {@link #next()} вернёт новые записи, как только они появятся, а {@link #poll(Duration)} их дождётся.
+ * Экземпляр не потокобезопасен, у каждого потребителя свой.
+ */
+public final class JournalReader {
+    private final MutationJournal journal;
+    private long offset;
+
+    JournalReader(MutationJournal journal, long offset) {
+        this.journal = journal;
+        this.offset = offset;
+    }
+
+    /**
+     * Смещение следующей записи, его сохраняют, чтобы продолжить чтение после перезапуска.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Следующая запись или {@code null}, если записей пока нет.
+     */
+    public JournalEntry next() {
+        if (offset >= journal.endOffset()) {
+            return null;
+        }
+
+        JournalEntry entry = journal.read(offset);
+        offset = entry.nextOffset();
+        return entry;
+    }
+
+    /**
+     * Следующая запись; если её нет, ждёт не дольше {@code timeout}.
+     */
+    public JournalEntry poll(Duration timeout) throws InterruptedException {
+        JournalEntry entry = next();
+
+        if (entry == null && journal.awaitAppend(offset, timeout)) {
+            entry = next();
+        }
+        return entry;
+    }
+}
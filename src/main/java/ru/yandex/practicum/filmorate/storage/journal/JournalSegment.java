@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл сегмента журнала, отображённый в память целиком. Имя файла — смещение первой записи
+ * сегмента, дополненное нулями, чтобы сегменты сортировались по имени. Файл создаётся сразу
+ * полного размера и заполнен нулями, поэтому нулевая длина означает конец записанных данных.
+ */
+final class JournalSegment {
+    static final String SUFFIX = ".journal";
+
+    final long baseOffset;
+    final Path path;
+    final MappedByteBuffer buffer;
+
+    private JournalSegment(long baseOffset, Path path, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path directory, long baseOffset, int size) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new JournalSegment(baseOffset, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    static JournalSegment open(Path path, boolean writable) throws IOException {
+        long baseOffset = baseOffset(path);
+
+        if (writable) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new JournalSegment(baseOffset, path,
+                        channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new JournalSegment(baseOffset, path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(SUFFIX) && name.length() == 20 + SUFFIX.length();
+    }
+
+    static long baseOffset(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    void force(int from, int length) {
+        if (length > 0) {
+            buffer.force(from, length);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.StripedLocks;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Записывает в {@link MutationJournal} изменения фильмов и лайков после того, как их принял
+ * основное хранилище. Изменение одного фильма или одной пары «фильм — пользователь» и его запись
+ * в журнал идут под общей блокировкой, чтобы порядок в журнале совпадал с порядком применения.
+ * Если журнал выключен, просто передаёт вызовы дальше.
+ */
+@Repository("journaledFilmStorage")
+public class JournaledFilmStorage implements FilmStorage {
+    private final FilmStorage delegate;
+    private final MutationJournal journal;
+    private final StripedLocks locks = new StripedLocks();
+
+    @Autowired
+    public JournaledFilmStorage(@Qualifier("filmStorage") FilmStorage delegate,
+                                ObjectProvider<MutationJournal> journal) {
+        this(delegate, journal.getIfAvailable());
+    }
+
+    public JournaledFilmStorage(FilmStorage delegate, MutationJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Collection<Film> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Collection<Film> findAll(Set<FilmField> fields) {
+        return delegate.findAll(fields);
+    }
+
+    @Override
+    public Collection<Film> findPage(long afterId, int limit, Set<FilmField> fields) {
+        return delegate.findPage(afterId, limit, fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        delegate.streamAll(consumer);
+    }
+
+    @Override
+    public Film create(Film film) {
+        Film created = delegate.create(film);
+        record(new Mutation.FilmCreated(created));
+        return created;
+    }
+
+    @Override
+    public Film update(Film newFilm) {
+        if (journal == null) {
+            return delegate.update(newFilm);
+        }
+        return locks.withLock(newFilm.getId(), () -> {
+            Film updated = delegate.update(newFilm);
+            journal.append(new Mutation.FilmUpdated(updated));
+            return updated;
+        });
+    }
+
+    @Override
+    public Film getById(Long id) {
+        return delegate.getById(id);
+    }
+
+    @Override
+    public void addLike(Long filmId, Long userId) {
+        if (journal == null) {
+            delegate.addLike(filmId, userId);
+            return;
+        }
+        locks.withLock(new Like(filmId, userId), () -> {
+            delegate.addLike(filmId, userId);
+            journal.append(new Mutation.LikeAdded(filmId, userId));
+        });
+    }
+
+    @Override
+    public void removeLike(Long filmId, Long userId) {
+        if (journal == null) {
+            delegate.removeLike(filmId, userId);
+            return;
+        }
+        locks.withLock(new Like(filmId, userId), () -> {
+            delegate.removeLike(filmId, userId);
+            journal.append(new Mutation.LikeRemoved(filmId, userId));
+        });
+    }
+
+    @Override
+    public List<BatchItemResult<Like>> addLikes(List<Like> likes) {
+        if (journal == null) {
+            return delegate.addLikes(likes);
+        }
+        return locks.withLocks(likes, () -> {
+            List<BatchItemResult<Like>> results = delegate.addLikes(likes);
+
+            for (BatchItemResult<Like> result : results) {
+                if (result.getStatus() == BatchStatus.CREATED) {
+                    journal.append(new Mutation.LikeAdded(result.getItem().getFilmId(), result.getItem().getUserId()));
+                }
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year) {
+        return delegate.getMostPopular(count, genreId, year);
+    }
+
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return delegate.getMostPopular(count, genreId, year, fields);
+    }
+
+    @Override
+    public Collection<Film> getTrending(Duration window, int count) {
+        return delegate.getTrending(window, count);
+    }
+
+    @Override
+    public Collection<Film> getRecommendations(Long userId, int limit) {
+        return delegate.getRecommendations(userId, limit);
+    }
+
+    @Override
+    public Collection<Film> search(String query, Set<FilmSearchField> fields, int limit) {
+        return delegate.search(query, fields, limit);
+    }
+
+    private void record(Mutation mutation) {
+        if (journal != null) {
+            journal.append(mutation);
+        }
+    }
+}
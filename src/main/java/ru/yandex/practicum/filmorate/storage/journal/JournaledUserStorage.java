@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Записывает в {@link MutationJournal} изменения пользователей и дружбы после того, как их приняло
+ * основное хранилище. Изменение одного пользователя или одной пары друзей и его запись в журнал
+ * идут под общей блокировкой, чтобы порядок в журнале совпадал с порядком применения.
+ * Если журнал выключен, просто передаёт вызовы дальше.
+ */
+@Repository("journaledUserStorage")
+public class JournaledUserStorage implements UserStorage {
+    private final UserStorage delegate;
+    private final MutationJournal journal;
+    private final StripedLocks locks = new StripedLocks();
+
+    @Autowired
+    public JournaledUserStorage(@Qualifier("userStorage") UserStorage delegate,
+                                ObjectProvider<MutationJournal> journal) {
+        this(delegate, journal.getIfAvailable());
+    }
+
+    public JournaledUserStorage(UserStorage delegate, MutationJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Collection<User> findAll(Set<UserField> fields) {
+        return delegate.findAll(fields);
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit, Set<UserField> fields) {
+        return delegate.findPage(afterId, limit, fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        delegate.streamAll(consumer);
+    }
+
+    @Override
+    public User create(User user) {
+        User created = delegate.create(user);
+        record(new Mutation.UserCreated(created));
+        return created;
+    }
+
+    @Override
+    public User update(User newUser) {
+        if (journal == null) {
+            return delegate.update(newUser);
+        }
+        return locks.withLock(newUser.getId(), () -> {
+            User updated = delegate.update(newUser);
+            journal.append(new Mutation.UserUpdated(updated));
+            return updated;
+        });
+    }
+
+    @Override
+    public User getById(Long id) {
+        return delegate.getById(id);
+    }
+
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        if (journal == null) {
+            delegate.addFriend(userId, friendId);
+            return;
+        }
+        locks.withLock(new Friendship(userId, friendId), () -> {
+            delegate.addFriend(userId, friendId);
+            journal.append(new Mutation.FriendAdded(userId, friendId));
+        });
+    }
+
+    @Override
+    public void removeFriend(Long userId, Long friendId) {
+        if (journal == null) {
+            delegate.removeFriend(userId, friendId);
+            return;
+        }
+        locks.withLock(new Friendship(userId, friendId), () -> {
+            delegate.removeFriend(userId, friendId);
+            journal.append(new Mutation.FriendRemoved(userId, friendId));
+        });
+    }
+
+    @Override
+    public List<BatchItemResult<Friendship>> addFriends(List<Friendship> friendships) {
+        if (journal == null) {
+            return delegate.addFriends(friendships);
+        }
+        return locks.withLocks(friendships, () -> {
+            List<BatchItemResult<Friendship>> results = delegate.addFriends(friendships);
+
+            for (BatchItemResult<Friendship> result : results) {
+                if (result.getStatus() == BatchStatus.CREATED) {
+                    journal.append(new Mutation.FriendAdded(result.getItem().getUserId(),
+                            result.getItem().getFriendId()));
+                }
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public Collection<User> getFriends(Long userId) {
+        return delegate.getFriends(userId);
+    }
+
+    @Override
+    public Collection<User> getFriends(Long userId, Set<UserField> fields) {
+        return delegate.getFriends(userId, fields);
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long friendId) {
+        return delegate.getCommonFriends(userId, friendId);
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long friendId, Set<UserField> fields) {
+        return delegate.getCommonFriends(userId, friendId, fields);
+    }
+
+    @Override
+    public Collection<User> getFriendSuggestions(Long userId, int limit) {
+        return delegate.getFriendSuggestions(userId, limit);
+    }
+
+    private void record(Mutation mutation) {
+        if (journal != null) {
+            journal.append(mutation);
+        }
+    }
+}
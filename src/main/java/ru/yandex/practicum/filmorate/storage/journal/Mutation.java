@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Изменение, записанное в {@link MutationJournal}. Фильмы и пользователи пишутся целиком,
+ * у жанров и рейтинга сохраняются только id. Повторное применение лайков и дружбы
+ * ничего не меняет, поэтому журнал можно проигрывать с любой записи.
+ */
+public sealed interface Mutation {
+    record FilmCreated(Film film) implements Mutation {
+    }
+
+    record FilmUpdated(Film film) implements Mutation {
+    }
+
+    record LikeAdded(long filmId, long userId) implements Mutation {
+    }
+
+    record LikeRemoved(long filmId, long userId) implements Mutation {
+    }
+
+    record UserCreated(User user) implements Mutation {
+    }
+
+    record UserUpdated(User user) implements Mutation {
+    }
+
+    record FriendAdded(long userId, long friendId) implements Mutation {
+    }
+
+    record FriendRemoved(long userId, long friendId) implements Mutation {
+    }
+}
@@ -0,0 +1,180 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.journal.Mutation.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Двоичное представление изменений: тип, время записи, затем поля изменения.
+ * Строки пишутся длиной и байтами UTF-8, отсутствующие значения — отдельным флагом.
+ */
+final class MutationCodec {
+    private static final byte FILM_CREATED = 1;
+    private static final byte FILM_UPDATED = 2;
+    private static final byte LIKE_ADDED = 3;
+    private static final byte LIKE_REMOVED = 4;
+    private static final byte USER_CREATED = 5;
+    private static final byte USER_UPDATED = 6;
+    private static final byte FRIEND_ADDED = 7;
+    private static final byte FRIEND_REMOVED = 8;
+
+    private MutationCodec() {
+    }
+
+    static byte[] encode(Mutation mutation, long timestamp) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            switch (mutation) {
+                case FilmCreated created -> writeFilm(out, FILM_CREATED, timestamp, created.film());
+                case FilmUpdated updated -> writeFilm(out, FILM_UPDATED, timestamp, updated.film());
+                case LikeAdded like -> writePair(out, LIKE_ADDED, timestamp, like.filmId(), like.userId());
+                case LikeRemoved like -> writePair(out, LIKE_REMOVED, timestamp, like.filmId(), like.userId());
+                case UserCreated created -> writeUser(out, USER_CREATED, timestamp, created.user());
+                case UserUpdated updated -> writeUser(out, USER_UPDATED, timestamp, updated.user());
+                case FriendAdded friend -> writePair(out, FRIEND_ADDED, timestamp, friend.userId(), friend.friendId());
+                case FriendRemoved friend ->
+                        writePair(out, FRIEND_REMOVED, timestamp, friend.userId(), friend.friendId());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Разбирает запись, уже прошедшую проверку контрольной суммы.
+     */
+    static JournalEntry decode(ByteBuffer in, long offset, long nextOffset) {
+        try {
+            byte type = in.get();
+            long timestamp = in.getLong();
+
+            Mutation mutation = switch (type) {
+                case FILM_CREATED -> new FilmCreated(readFilm(in));
+                case FILM_UPDATED -> new FilmUpdated(readFilm(in));
+                case LIKE_ADDED -> new LikeAdded(in.getLong(), in.getLong());
+                case LIKE_REMOVED -> new LikeRemoved(in.getLong(), in.getLong());
+                case USER_CREATED -> new UserCreated(readUser(in));
+                case USER_UPDATED -> new UserUpdated(readUser(in));
+                case FRIEND_ADDED -> new FriendAdded(in.getLong(), in.getLong());
+                case FRIEND_REMOVED -> new FriendRemoved(in.getLong(), in.getLong());
+                default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + type
+                        + " по смещению " + offset);
+            };
+            return new JournalEntry(offset, nextOffset, timestamp, mutation);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Запись журнала по смещению " + offset + " обрезана", e);
+        }
+    }
+
+    private static void writeFilm(DataOutputStream out, byte type, long timestamp, Film film) throws IOException {
+        out.writeByte(type);
+        out.writeLong(timestamp);
+        out.writeLong(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        out.writeBoolean(film.getDuration() != null);
+        if (film.getDuration() != null) {
+            out.writeLong(film.getDuration());
+        }
+        out.writeInt(film.getMpa() != null ? film.getMpa().getId() : 0);
+        out.writeInt(film.getGenres() != null ? film.getGenres().size() : 0);
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                out.writeInt(genre.getId());
+            }
+        }
+    }
+
+    private static Film readFilm(ByteBuffer in) {
+        Film film = new Film();
+        film.setId(in.getLong());
+        film.setName(readString(in));
+        film.setDescription(readString(in));
+        film.setReleaseDate(readDate(in));
+        film.setDuration(in.get() != 0 ? in.getLong() : null);
+
+        int mpaId = in.getInt();
+        film.setMpa(mpaId != 0 ? new Rating(mpaId, null) : null);
+        for (int i = in.getInt(); i > 0; i--) {
+            film.getGenres().add(new Genre(in.getInt(), null));
+        }
+        return film;
+    }
+
+    private static void writeUser(DataOutputStream out, byte type, long timestamp, User user) throws IOException {
+        out.writeByte(type);
+        out.writeLong(timestamp);
+        out.writeLong(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+    }
+
+    private static User readUser(ByteBuffer in) {
+        User user = new User();
+        user.setId(in.getLong());
+        user.setEmail(readString(in));
+        user.setLogin(readString(in));
+        user.setName(readString(in));
+        user.setBirthday(readDate(in));
+        return user;
+    }
+
+    private static void writePair(DataOutputStream out, byte type, long timestamp, long first, long second)
+            throws IOException {
+        out.writeByte(type);
+        out.writeLong(timestamp);
+        out.writeLong(first);
+        out.writeLong(second);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.toEpochDay());
+        }
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        return in.get() != 0 ? LocalDate.ofEpochDay(in.getLong()) : null;
+    }
+}
@@ -0,0 +1,368 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал изменений хранилищ только на добавление. Записи лежат в сегментах, отображённых в память
+ * ({@link JournalSegment}): длина, контрольная сумма CRC32C и тело ({@link MutationCodec}).
+ * Смещение записи — её позиция от начала журнала в байтах; следующий сегмент начинается со смещения,
+ * на котором закончился предыдущий, а в конце предыдущего остаётся метка {@code -1}.
+ *
+ * <p>При {@code fsync} запись возвращается только после сброса сегмента на диск. Сброс групповой:
+ * пока один поток ждёт диска, остальные дописывают свои записи, и следующий сброс покрывает их все.
+ *
+ * <p>При открытии последний сегмент просматривается до первой неполной или повреждённой записи,
+ * хвост после неё обнуляется, и запись продолжается с этого места.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.journal.enabled", havingValue = "true")
+public class MutationJournal {
+    public static final String APPENDS_COUNTER = "filmorate.journal.appends";
+    public static final String SYNCS_COUNTER = "filmorate.journal.syncs";
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+
+    private JournalSegment active;
+    private int position;
+    private volatile long endOffset;
+    private long durableOffset;
+    private volatile boolean closed;
+
+    @Autowired
+    public MutationJournal(@Value("${filmorate.journal.directory:data/journal}") Path directory,
+                           @Value("${filmorate.journal.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${filmorate.journal.fsync:true}") boolean fsync,
+                           ObjectProvider<MeterRegistry> registry) throws IOException {
+        this(directory, segmentSize, fsync);
+        registry.ifAvailable(meters -> {
+            FunctionCounter.builder(APPENDS_COUNTER, appends, LongAdder::sum).register(meters);
+            FunctionCounter.builder(SYNCS_COUNTER, syncs, LongAdder::sum).register(meters);
+        });
+    }
+
+    public MutationJournal(Path directory, DataSize segmentSize, boolean fsync) throws IOException {
+        if (segmentSize.toBytes() < 1024 || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Размер сегмента журнала должен быть от 1KB до 2GB");
+        }
+
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.fsync = fsync;
+        open();
+    }
+
+    /**
+     * Дописывает изменение и возвращает смещение записи.
+     */
+    public long append(Mutation mutation) {
+        byte[] payload = MutationCodec.encode(mutation, System.currentTimeMillis());
+        int recordSize = HEADER_SIZE + payload.length;
+
+        if (recordSize > segmentSize - Integer.BYTES) {
+            throw new IllegalArgumentException("Запись журнала не помещается в сегмент: " + recordSize + " байт");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        long offset;
+        long end;
+
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Журнал изменений закрыт");
+            }
+            if (position + recordSize > active.capacity() - Integer.BYTES) {
+                rotate();
+            }
+
+            // Длина пишется последней: пока её нет, запись при восстановлении считается незаконченной.
+            active.buffer.put(position + HEADER_SIZE, payload);
+            active.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+            active.buffer.putInt(position, payload.length);
+            offset = active.baseOffset + position;
+            position += recordSize;
+            end = offset + recordSize;
+            endOffset = end;
+            appended.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+
+        appends.increment();
+        if (fsync) {
+            commit(end);
+        }
+        return offset;
+    }
+
+    /**
+     * Читатель, начинающий с записи по смещению {@code offset}. Смещение должно быть началом записи,
+     * например {@link JournalEntry#nextOffset()} последней обработанной.
+     */
+    public JournalReader reader(long offset) {
+        if (offset < startOffset() || offset > endOffset) {
+            throw new IllegalArgumentException("Смещение " + offset + " вне журнала: от " + startOffset()
+                    + " до " + endOffset);
+        }
+        return new JournalReader(this, offset);
+    }
+
+    /**
+     * Проигрывает записи от {@code offset} до текущего конца журнала и возвращает смещение,
+     * с которого продолжать.
+     */
+    public long replay(long offset, Consumer<JournalEntry> consumer) {
+        JournalReader reader = reader(offset);
+
+        for (JournalEntry entry = reader.next(); entry != null; entry = reader.next()) {
+            consumer.accept(entry);
+        }
+        return reader.offset();
+    }
+
+    public long startOffset() {
+        return segments.firstKey();
+    }
+
+    public long endOffset() {
+        return endOffset;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long getAppendCount() {
+        return appends.sum();
+    }
+
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    @PreDestroy
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (fsync) {
+                active.buffer.force();
+            }
+            appended.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+        log.info("Журнал изменений {} закрыт на смещении {}", directory, endOffset);
+    }
+
+    JournalEntry read(long offset) {
+        Map.Entry<Long, JournalSegment> floor = segments.floorEntry(offset);
+
+        if (floor == null) {
+            throw new IllegalArgumentException("Смещение " + offset + " раньше начала журнала");
+        }
+
+        JournalSegment segment = floor.getValue();
+        int at = (int) (offset - segment.baseOffset);
+        int length = at + HEADER_SIZE <= segment.capacity() ? segment.buffer.getInt(at) : 0;
+
+        if (length <= 0 || at + HEADER_SIZE + length > segment.capacity()) {
+            throw new IllegalStateException("По смещению " + offset + " нет записи журнала");
+        }
+
+        ByteBuffer payload = segment.buffer.slice(at + HEADER_SIZE, length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+
+        if ((int) crc.getValue() != segment.buffer.getInt(at + Integer.BYTES)) {
+            throw new IllegalStateException("Запись журнала по смещению " + offset + " повреждена");
+        }
+        return MutationCodec.decode(payload, offset, offset + HEADER_SIZE + length);
+    }
+
+    /**
+     * Ждёт записи за смещением {@code offset}. Возвращает {@code false}, если время вышло
+     * или журнал закрыт.
+     */
+    boolean awaitAppend(long offset, Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+
+        appendLock.lock();
+        try {
+            while (endOffset <= offset && !closed) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = appended.awaitNanos(nanos);
+            }
+            return endOffset > offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает на диск всё записанное к этому моменту, если запись по {@code end} ещё не сброшена
+     * другим потоком, пока этот ждал своей очереди.
+     */
+    private void commit(long end) {
+        commitLock.lock();
+        try {
+            if (durableOffset >= end) {
+                return;
+            }
+
+            JournalSegment segment;
+            long target;
+            appendLock.lock();
+            try {
+                segment = active;
+                target = endOffset;
+            } finally {
+                appendLock.unlock();
+            }
+
+            int from = (int) Math.max(0, durableOffset - segment.baseOffset);
+            segment.force(from, (int) (target - segment.baseOffset) - from);
+            durableOffset = target;
+            syncs.increment();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void rotate() {
+        long baseOffset = active.baseOffset + position;
+
+        active.buffer.putInt(position, END_OF_SEGMENT);
+        if (fsync) {
+            active.buffer.force();
+        }
+
+        try {
+            active = JournalSegment.create(directory, baseOffset, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала", e);
+        }
+        segments.put(baseOffset, active);
+        position = 0;
+        log.debug("Журнал изменений: новый сегмент {}", active.path);
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(JournalSegment::isSegment)
+                    .sorted()
+                    .toList();
+        }
+
+        for (int i = 0; i < files.size() - 1; i++) {
+            JournalSegment segment = JournalSegment.open(files.get(i), false);
+            segments.put(segment.baseOffset, segment);
+        }
+
+        if (files.isEmpty()) {
+            active = JournalSegment.create(directory, 0, segmentSize);
+            segments.put(active.baseOffset, active);
+            position = 0;
+        } else {
+            active = JournalSegment.open(files.getLast(), true);
+            segments.put(active.baseOffset, active);
+            position = recover(active);
+        }
+
+        endOffset = active.baseOffset + position;
+        durableOffset = endOffset;
+        log.info("Журнал изменений {}: сегментов {}, смещения от {} до {}", directory, segments.size(),
+                startOffset(), endOffset);
+    }
+
+    /**
+     * Находит конец целых записей последнего сегмента. Всё, что после него, обнуляется,
+     * чтобы недописанная перед остановкой запись не всплыла среди новых.
+     */
+    private int recover(JournalSegment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int at = 0;
+
+        while (at + HEADER_SIZE <= segment.capacity()) {
+            int length = buffer.getInt(at);
+
+            if (length == END_OF_SEGMENT) {
+                position = at;
+                rotate();
+                return 0;
+            }
+            if (length <= 0 || at + HEADER_SIZE + length > segment.capacity() - Integer.BYTES) {
+                break;
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(at + HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(at + Integer.BYTES)) {
+                break;
+            }
+            at += HEADER_SIZE + length;
+        }
+
+        int dirty = at;
+        while (dirty < segment.capacity() && buffer.get(dirty) == 0) {
+            dirty++;
+        }
+        if (dirty < segment.capacity()) {
+            log.warn("Журнал изменений {}: отброшен неполный хвост после смещения {}", segment.path,
+                    segment.baseOffset + at);
+            byte[] zeros = new byte[Math.min(1 << 16, segment.capacity() - at)];
+
+            for (int from = at; from < segment.capacity(); from += zeros.length) {
+                buffer.put(from, zeros, 0, Math.min(zeros.length, segment.capacity() - from));
+            }
+            segment.buffer.force();
+        }
+        return at;
+    }
+}
@@ -0,0 +1,498 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import exception.NotFoundException;
+import exception.ValidationException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
+import ru.yandex.practicum.filmorate.storage.index.ConcurrentLongMap;
+import ru.yandex.practicum.filmorate.storage.index.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.index.SortedLongArrays;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище фильмов целиком в памяти. Фильмы хранятся неизменяемыми записями в {@link ConcurrentLongMap},
+ * жанры и рейтинг — только по id, объекты берутся из {@link ReferenceData}. Лайки каждого фильма —
+ * отсортированный массив id пользователей и параллельный ему массив времени лайков, которые заменяются
+ * под блокировкой сегмента; под ней же обновляются индексы популярности, рекомендаций и трендов,
+ * так что изменения одного фильма доходят до них по порядку.
+ */
+@Repository("inMemoryFilmStorage")
+@Qualifier("filmStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class InMemoryFilmStorage implements FilmStorage {
+    private static final int[] NO_GENRES = new int[0];
+
+    private final ReferenceData referenceData;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmLikesIndex likesIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmTrendingIndex trendingIndex;
+    private final InMemoryUserStorage userStorage;
+    private final ConcurrentLongMap<StoredFilm> films = new ConcurrentLongMap<>(1024);
+    private final ConcurrentLongMap<FilmLikes> likes = new ConcurrentLongMap<>(1024);
+    private final AtomicLong lastId = new AtomicLong();
+
+    public InMemoryFilmStorage(ReferenceData referenceData,
+                               FilmPopularityIndex popularityIndex,
+                               FilmLikesIndex likesIndex,
+                               FilmSearchIndex searchIndex,
+                               FilmTrendingIndex trendingIndex,
+                               InMemoryUserStorage userStorage) {
+        this.referenceData = referenceData;
+        this.popularityIndex = popularityIndex;
+        this.likesIndex = likesIndex;
+        this.searchIndex = searchIndex;
+        this.trendingIndex = trendingIndex;
+        this.userStorage = userStorage;
+    }
+
+    private record StoredFilm(long id, String name, String description, LocalDate releaseDate, Long duration,
+                              int mpaId, int[] genreIds) {
+    }
+
+    /**
+     * Лайки фильма: {@code likedAt[i]} — время лайка пользователя {@code userIds[i]}.
+     * Как и в {@link SortedLongArrays}, изменения возвращают новую запись, а исходная не меняется.
+     */
+    private record FilmLikes(long[] userIds, long[] likedAt) {
+        static final FilmLikes EMPTY = new FilmLikes(SortedLongArrays.EMPTY, SortedLongArrays.EMPTY);
+
+        FilmLikes with(long userId, long time) {
+            int pos = Arrays.binarySearch(userIds, userId);
+
+            if (pos >= 0) {
+                return this;
+            }
+
+            int insertAt = -pos - 1;
+            long[] times = new long[likedAt.length + 1];
+            System.arraycopy(likedAt, 0, times, 0, insertAt);
+            times[insertAt] = time;
+            System.arraycopy(likedAt, insertAt, times, insertAt + 1, likedAt.length - insertAt);
+            return new FilmLikes(SortedLongArrays.insert(userIds, userId), times);
+        }
+
+        FilmLikes without(long userId) {
+            int pos = Arrays.binarySearch(userIds, userId);
+
+            if (pos < 0) {
+                return this;
+            }
+
+            long[] times = new long[likedAt.length - 1];
+            System.arraycopy(likedAt, 0, times, 0, pos);
+            System.arraycopy(likedAt, pos + 1, times, pos, likedAt.length - pos - 1);
+            return new FilmLikes(SortedLongArrays.remove(userIds, userId), times);
+        }
+
+        long likedAt(long userId) {
+            return likedAt[Arrays.binarySearch(userIds, userId)];
+        }
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return findPage(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<Film> findPage(long afterId, int limit) {
+        List<Film> page = new ArrayList<>(Math.min(limit, 1024));
+        long last = lastId.get();
+
+        for (long id = Math.max(afterId, 0) + 1; id <= last && page.size() < limit; id++) {
+            StoredFilm film = films.get(id);
+
+            if (film != null) {
+                page.add(toFilm(film));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        long last = lastId.get();
+
+        for (long id = 1; id <= last; id++) {
+            StoredFilm film = films.get(id);
+
+            if (film != null) {
+                consumer.accept(toFilm(film));
+            }
+        }
+    }
+
+    @Override
+    public Film create(Film film) {
+        int[] genreIds = validateMpaAndGenres(film);
+
+        film.setId(lastId.incrementAndGet());
+        store(film, genreIds);
+        return getById(film.getId());
+    }
+
+    @Override
+    public Film update(Film film) {
+        getById(film.getId());
+        int[] genreIds = validateMpaAndGenres(film);
+
+        store(film, genreIds);
+        return getById(film.getId());
+    }
+
+    @Override
+    public Film getById(Long id) {
+        StoredFilm film = id != null ? films.get(id) : null;
+
+        if (film == null) {
+            throw new NotFoundException("Фильм с id = " + id + " не найден");
+        }
+        return toFilm(film);
+    }
+
+    @Override
+    public void addLike(Long filmId, Long userId) {
+        getById(filmId);
+
+        if (userId == null || !userStorage.exists(userId)) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        insertLike(filmId, userId);
+    }
+
+    @Override
+    public void removeLike(Long filmId, Long userId) {
+        boolean[] removed = new boolean[1];
+
+        if (filmId != null && userId != null && likes.containsKey(filmId)) {
+            likes.compute(filmId, (key, current) -> {
+                if (current == null) {
+                    return null;
+                }
+
+                FilmLikes updated = current.without(userId);
+                if (updated != current) {
+                    removed[0] = true;
+                    popularityIndex.likeRemoved(filmId);
+                    likesIndex.likeRemoved(filmId, userId);
+                    trendingIndex.likeRemoved(filmId, current.likedAt(userId));
+                }
+                return updated.userIds().length > 0 ? updated : null;
+            });
+        }
+
+        if (!removed[0]) {
+            throw new NotFoundException("Лайк не найден");
+        }
+    }
+
+    @Override
+    public List<BatchItemResult<Like>> addLikes(List<Like> batch) {
+        List<BatchItemResult<Like>> results = new ArrayList<>(batch.size());
+
+        for (Like like : batch) {
+            if (like.getFilmId() == null || like.getUserId() == null) {
+                results.add(new BatchItemResult<>(like, BatchStatus.INVALID, "Не указан id фильма или пользователя"));
+            } else if (!films.containsKey(like.getFilmId())) {
+                results.add(new BatchItemResult<>(like, BatchStatus.NOT_FOUND,
+                        "Фильм с id = " + like.getFilmId() + " не найден"));
+            } else if (!userStorage.exists(like.getUserId())) {
+                results.add(new BatchItemResult<>(like, BatchStatus.NOT_FOUND,
+                        "Пользователь с id = " + like.getUserId() + " не найден"));
+            } else {
+                boolean created = insertLike(like.getFilmId(), like.getUserId());
+                results.add(BatchItemResult.of(like, created ? BatchStatus.CREATED : BatchStatus.ALREADY_EXISTS));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Collection<Film> getMostPopular(int count, Integer genreId, Integer year) {
+        List<Film> result = new ArrayList<>();
+
+        for (Long id : popularityIndex.getTop(count, genreId, year)) {
+            StoredFilm film = films.get(id);
+
+            if (film != null) {
+                result.add(toFilm(film));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Film> getTrending(Duration window, int count) {
+        return getByIds(trendingIndex.getTop(window, count, System.currentTimeMillis()).stream()
+                .mapToLong(Long::longValue)
+                .toArray());
+    }
+
+    @Override
+    public Collection<Film> getRecommendations(Long userId, int limit) {
+        return getByIds(likesIndex.recommend(userId, limit));
+    }
+
+    @Override
+    public Collection<Film> search(String query, Set<FilmSearchField> fields, int limit) {
+        return getByIds(searchIndex.search(query, fields, limit));
+    }
+
+    /**
+     * Сначала снимает лайки, затем фильмы: фильмы не удаляются, поэтому все фильмы с лайками
+     * попадут в снимок. Пользователи снимаются позже, в {@link InMemoryUserStorage#writeSnapshot}.
+     */
+    void writeSnapshot(SnapshotWriter out) throws IOException {
+        List<Long> likedFilms = new ArrayList<>();
+        List<FilmLikes> likeLists = new ArrayList<>();
+        likes.forEach((filmId, filmLikes) -> {
+            likedFilms.add(filmId);
+            likeLists.add(filmLikes);
+        });
+
+        long last = lastId.get();
+        List<StoredFilm> snapshot = new ArrayList<>(films.size());
+        for (long id = 1; id <= last; id++) {
+            StoredFilm film = films.get(id);
+
+            if (film != null) {
+                snapshot.add(film);
+            }
+        }
+
+        out.writeVarLong(last);
+        out.writeVarLong(snapshot.size());
+        for (StoredFilm film : snapshot) {
+            out.writeVarLong(film.id());
+            out.writeString(film.name());
+            out.writeString(film.description());
+            out.writeDate(film.releaseDate());
+            out.writeSignedVarLong(film.duration() != null ? film.duration() : -1);
+            out.writeVarLong(film.mpaId());
+            out.writeSortedIds(film.genreIds());
+        }
+
+        out.writeVarLong(likedFilms.size());
+        for (int i = 0; i < likedFilms.size(); i++) {
+            out.writeVarLong(likedFilms.get(i));
+            out.writeSortedIds(likeLists.get(i).userIds());
+            for (long likedAt : likeLists.get(i).likedAt()) {
+                out.writeVarLong(likedAt);
+            }
+        }
+    }
+
+    /**
+     * Заменяет содержимое хранилища данными снимка и перестраивает индексы популярности,
+     * рекомендаций, поиска и трендов. В снимках версии 1 нет времени лайков: такие лайки
+     * считаются старыми и в тренды не попадают.
+     */
+    void restoreSnapshot(SnapshotReader in, int version) throws IOException {
+        long last = in.readVarLong();
+        int filmCount = in.readCount();
+        List<StoredFilm> restored = new ArrayList<>(filmCount);
+
+        for (int i = 0; i < filmCount; i++) {
+            long id = in.readVarLong();
+            String name = in.readString();
+            String description = in.readString();
+            LocalDate releaseDate = in.readDate();
+            long duration = in.readSignedVarLong();
+            int mpaId = (int) in.readVarLong();
+            int[] genreIds = in.readSortedIntIds();
+            restored.add(new StoredFilm(id, name, description, releaseDate, duration >= 0 ? duration : null,
+                    mpaId, genreIds));
+        }
+
+        int likedCount = in.readCount();
+        Map<Long, FilmLikes> restoredLikes = new HashMap<>(likedCount * 2);
+        for (int i = 0; i < likedCount; i++) {
+            long filmId = in.readVarLong();
+            long[] userIds = in.readSortedIds();
+            long[] likedAt = new long[userIds.length];
+
+            if (version > 1) {
+                for (int j = 0; j < likedAt.length; j++) {
+                    likedAt[j] = in.readVarLong();
+                }
+            }
+            restoredLikes.put(filmId, new FilmLikes(userIds, likedAt));
+        }
+
+        films.clear();
+        likes.clear();
+        restored.forEach(film -> films.put(film.id(), film));
+        restoredLikes.forEach(likes::put);
+        lastId.set(last);
+        rebuildIndexes(restored, restoredLikes);
+    }
+
+    private void rebuildIndexes(List<StoredFilm> restored, Map<Long, FilmLikes> restoredLikes) {
+        Map<Long, long[]> usersByFilm = new HashMap<>(restoredLikes.size() * 2);
+        Map<Long, long[]> likedAtByFilm = new HashMap<>(restoredLikes.size() * 2);
+        restoredLikes.forEach((filmId, filmLikes) -> {
+            usersByFilm.put(filmId, filmLikes.userIds());
+            likedAtByFilm.put(filmId, filmLikes.likedAt());
+        });
+
+        Map<Long, Long> likesByFilm = new HashMap<>(restored.size() * 2);
+        Map<Long, FilmPopularityIndex.Attributes> attributes = new HashMap<>(restored.size() * 2);
+        List<Film> searchable = new ArrayList<>(restored.size());
+
+        for (StoredFilm film : restored) {
+            likesByFilm.put(film.id(), (long) usersByFilm.getOrDefault(film.id(), SortedLongArrays.EMPTY).length);
+            attributes.put(film.id(), popularityAttributes(film));
+
+            Film text = new Film();
+            text.setId(film.id());
+            text.setName(film.name());
+            text.setDescription(film.description());
+            searchable.add(text);
+        }
+        popularityIndex.rebuild(likesByFilm, attributes);
+        searchIndex.rebuild(searchable);
+        likesIndex.rebuild(invert(usersByFilm));
+        trendingIndex.rebuild(likedAtByFilm, System.currentTimeMillis());
+    }
+
+    /**
+     * Переворачивает «фильм → пользователи» в «пользователь → фильмы» с отсортированными массивами.
+     */
+    private static Map<Long, long[]> invert(Map<Long, long[]> usersByFilm) {
+        LongIntCounter counts = new LongIntCounter(usersByFilm.size());
+        usersByFilm.values().forEach(userIds -> {
+            for (long userId : userIds) {
+                counts.increment(userId);
+            }
+        });
+
+        Map<Long, long[]> filmsByUser = new HashMap<>(counts.size() * 2);
+        LongIntCounter filled = new LongIntCounter(counts.size());
+        long[] filmIds = usersByFilm.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+        for (long filmId : filmIds) {
+            for (long userId : usersByFilm.get(filmId)) {
+                long[] userFilms = filmsByUser.computeIfAbsent(userId, id -> new long[counts.get(id)]);
+                userFilms[filled.get(userId)] = filmId;
+                filled.increment(userId);
+            }
+        }
+        return filmsByUser;
+    }
+
+    private boolean insertLike(long filmId, long userId) {
+        boolean[] created = new boolean[1];
+
+        likes.compute(filmId, (key, current) -> {
+            FilmLikes filmLikes = current != null ? current : FilmLikes.EMPTY;
+            long likedAt = System.currentTimeMillis();
+            FilmLikes updated = filmLikes.with(userId, likedAt);
+
+            if (updated != filmLikes) {
+                created[0] = true;
+                popularityIndex.likeAdded(filmId);
+                likesIndex.likeAdded(filmId, userId);
+                trendingIndex.likeAdded(filmId, likedAt);
+            }
+            return updated;
+        });
+        return created[0];
+    }
+
+    private void store(Film film, int[] genreIds) {
+        StoredFilm stored = new StoredFilm(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getMpa() != null ? film.getMpa().getId() : 0, genreIds);
+
+        films.put(stored.id(), stored);
+        popularityIndex.register(stored.id(), popularityAttributes(stored));
+        searchIndex.put(film);
+    }
+
+    private List<Film> getByIds(long[] ids) {
+        List<Film> result = new ArrayList<>(ids.length);
+
+        for (long id : ids) {
+            StoredFilm film = films.get(id);
+
+            if (film != null) {
+                result.add(toFilm(film));
+            }
+        }
+        return result;
+    }
+
+    private Film toFilm(StoredFilm stored) {
+        Film film = new Film();
+        film.setId(stored.id());
+        film.setName(stored.name());
+        film.setDescription(stored.description());
+        film.setReleaseDate(stored.releaseDate());
+        film.setDuration(stored.duration());
+
+        if (stored.mpaId() != 0) {
+            film.setMpa(referenceData.findRating(stored.mpaId()));
+        }
+        for (int genreId : stored.genreIds()) {
+            film.getGenres().add(referenceData.findGenre(genreId));
+        }
+        return film;
+    }
+
+    private static FilmPopularityIndex.Attributes popularityAttributes(StoredFilm film) {
+        Set<Integer> genreIds = new HashSet<>(film.genreIds().length * 2);
+        for (int genreId : film.genreIds()) {
+            genreIds.add(genreId);
+        }
+        return new FilmPopularityIndex.Attributes(
+                film.releaseDate() != null ? film.releaseDate().getYear() : null, Set.copyOf(genreIds));
+    }
+
+    /**
+     * Проверяет рейтинг и жанры по справочникам и возвращает отсортированные id жанров без повторов.
+     */
+    private int[] validateMpaAndGenres(Film film) {
+        if (film.getMpa() != null && film.getMpa().getId() != 0) {
+            if (referenceData.findRating(film.getMpa().getId()) == null) {
+                throw new NotFoundException("MPA рейтинг не найден");
+            }
+        }
+
+        if (film.getGenres() == null || film.getGenres().isEmpty()) {
+            return NO_GENRES;
+        }
+
+        for (Genre genre : film.getGenres()) {
+            if (genre != null && genre.getId() != 0 && referenceData.findGenre(genre.getId()) == null) {
+                throw new NotFoundException("Жанр не найден");
+            }
+        }
+
+        int[] genreIds = film.getGenres().stream()
+                .filter(Objects::nonNull)
+                .mapToInt(Genre::getId)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        if (genreIds.length > 0 && genreIds[0] == 0) {
+            throw new ValidationException("Ошибка сохранения фильма");
+        }
+        return genreIds;
+    }
+}
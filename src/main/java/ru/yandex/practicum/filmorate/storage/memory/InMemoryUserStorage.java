@@ -0,0 +1,286 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import exception.NotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.ConcurrentLongMap;
+import ru.yandex.practicum.filmorate.storage.index.SortedLongArrays;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище пользователей целиком в памяти. Пользователи лежат в {@link ConcurrentLongMap} по id,
+ * друзья — там же в виде отсортированных массивов, которые заменяются под блокировкой сегмента.
+ * Id выдаются подряд и не переиспользуются, поэтому постраничное чтение идёт прямо по диапазону id.
+ * Рекомендации друзей считает общий {@link FriendshipGraph}.
+ */
+@Repository("inMemoryUserStorage")
+@Qualifier("userStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class InMemoryUserStorage implements UserStorage {
+    private final FriendshipGraph friendshipGraph;
+    private final ConcurrentLongMap<User> users = new ConcurrentLongMap<>(1024);
+    private final ConcurrentLongMap<long[]> friends = new ConcurrentLongMap<>(1024);
+    private final AtomicLong lastId = new AtomicLong();
+
+    public InMemoryUserStorage(FriendshipGraph friendshipGraph) {
+        this.friendshipGraph = friendshipGraph;
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return findPage(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        long last = lastId.get();
+
+        for (long id = Math.max(afterId, 0) + 1; id <= last && page.size() < limit; id++) {
+            User user = users.get(id);
+
+            if (user != null) {
+                page.add(copy(user));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        long last = lastId.get();
+
+        for (long id = 1; id <= last; id++) {
+            User user = users.get(id);
+
+            if (user != null) {
+                consumer.accept(copy(user));
+            }
+        }
+    }
+
+    @Override
+    public User create(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+
+        user.setId(lastId.incrementAndGet());
+        users.put(user.getId(), copy(user));
+        return user;
+    }
+
+    @Override
+    public User update(User user) {
+        getById(user.getId());
+
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+
+        users.put(user.getId(), copy(user));
+        return user;
+    }
+
+    @Override
+    public User getById(Long id) {
+        User user = id != null ? users.get(id) : null;
+
+        if (user == null) {
+            throw new NotFoundException("Пользователь с id = " + id + " не найден");
+        }
+        return copy(user);
+    }
+
+    public boolean exists(long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        getById(userId);
+        getById(friendId);
+        insertFriend(userId, friendId);
+    }
+
+    @Override
+    public void removeFriend(Long userId, Long friendId) {
+        if (userId == null || !friends.containsKey(userId)) {
+            return;
+        }
+
+        friends.compute(userId, (key, current) -> {
+            if (current == null) {
+                return null;
+            }
+
+            long[] updated = SortedLongArrays.remove(current, friendId);
+            if (updated != current) {
+                friendshipGraph.removeFriend(userId, friendId);
+            }
+            return updated.length > 0 ? updated : null;
+        });
+    }
+
+    @Override
+    public List<BatchItemResult<Friendship>> addFriends(List<Friendship> friendships) {
+        List<BatchItemResult<Friendship>> results = new ArrayList<>(friendships.size());
+
+        for (Friendship friendship : friendships) {
+            if (friendship.getUserId() == null || friendship.getFriendId() == null) {
+                results.add(new BatchItemResult<>(friendship, BatchStatus.INVALID, "Не указан id пользователя или друга"));
+            } else if (!exists(friendship.getUserId())) {
+                results.add(new BatchItemResult<>(friendship, BatchStatus.NOT_FOUND,
+                        "Пользователь с id = " + friendship.getUserId() + " не найден"));
+            } else if (!exists(friendship.getFriendId())) {
+                results.add(new BatchItemResult<>(friendship, BatchStatus.NOT_FOUND,
+                        "Пользователь с id = " + friendship.getFriendId() + " не найден"));
+            } else {
+                boolean created = insertFriend(friendship.getUserId(), friendship.getFriendId());
+                results.add(BatchItemResult.of(friendship, created ? BatchStatus.CREATED : BatchStatus.ALREADY_EXISTS));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Collection<User> getFriends(Long userId) {
+        return getByIds(friendsOf(userId));
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long friendId) {
+        return getByIds(SortedLongArrays.intersect(friendsOf(userId), friendsOf(friendId)));
+    }
+
+    @Override
+    public Collection<User> getFriendSuggestions(Long userId, int limit) {
+        return getByIds(friendshipGraph.suggestFriends(userId, limit));
+    }
+
+    /**
+     * Сначала снимает друзей, затем пользователей: пользователи не удаляются,
+     * поэтому все id друзей из снимка найдутся среди снятых после них пользователей.
+     */
+    void writeSnapshot(SnapshotWriter out) throws IOException {
+        List<long[]> friendLists = new ArrayList<>();
+        List<Long> owners = new ArrayList<>();
+        friends.forEach((userId, ids) -> {
+            owners.add(userId);
+            friendLists.add(ids);
+        });
+
+        long last = lastId.get();
+        List<User> snapshot = new ArrayList<>(users.size());
+        for (long id = 1; id <= last; id++) {
+            User user = users.get(id);
+
+            if (user != null) {
+                snapshot.add(user);
+            }
+        }
+
+        out.writeVarLong(last);
+        out.writeVarLong(snapshot.size());
+        for (User user : snapshot) {
+            out.writeVarLong(user.getId());
+            out.writeString(user.getEmail());
+            out.writeString(user.getLogin());
+            out.writeString(user.getName());
+            out.writeDate(user.getBirthday());
+        }
+
+        out.writeVarLong(owners.size());
+        for (int i = 0; i < owners.size(); i++) {
+            out.writeVarLong(owners.get(i));
+            out.writeSortedIds(friendLists.get(i));
+        }
+    }
+
+    /**
+     * Заменяет содержимое хранилища данными снимка и перестраивает граф дружбы.
+     */
+    void restoreSnapshot(SnapshotReader in) throws IOException {
+        long last = in.readVarLong();
+        int userCount = in.readCount();
+        List<User> restored = new ArrayList<>(userCount);
+
+        for (int i = 0; i < userCount; i++) {
+            User user = new User();
+            user.setId(in.readVarLong());
+            user.setEmail(in.readString());
+            user.setLogin(in.readString());
+            user.setName(in.readString());
+            user.setBirthday(in.readDate());
+            restored.add(user);
+        }
+
+        int ownerCount = in.readCount();
+        Map<Long, long[]> restoredFriends = new HashMap<>(ownerCount * 2);
+        for (int i = 0; i < ownerCount; i++) {
+            restoredFriends.put(in.readVarLong(), in.readSortedIds());
+        }
+
+        users.clear();
+        friends.clear();
+        restored.forEach(user -> users.put(user.getId(), user));
+        restoredFriends.forEach(friends::put);
+        lastId.set(last);
+        friendshipGraph.rebuild(restoredFriends);
+    }
+
+    private boolean insertFriend(long userId, long friendId) {
+        boolean[] created = new boolean[1];
+
+        friends.compute(userId, (key, current) -> {
+            long[] ids = current != null ? current : SortedLongArrays.EMPTY;
+            long[] updated = SortedLongArrays.insert(ids, friendId);
+
+            if (updated != ids) {
+                created[0] = true;
+                friendshipGraph.addFriend(userId, friendId);
+            }
+            return updated;
+        });
+        return created[0];
+    }
+
+    private long[] friendsOf(Long userId) {
+        long[] ids = userId != null ? friends.get(userId) : null;
+        return ids != null ? ids : SortedLongArrays.EMPTY;
+    }
+
+    private List<User> getByIds(long[] ids) {
+        List<User> result = new ArrayList<>(ids.length);
+
+        for (long id : ids) {
+            User user = users.get(id);
+
+            if (user != null) {
+                result.add(copy(user));
+            }
+        }
+        return result;
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        return copy;
+    }
+}
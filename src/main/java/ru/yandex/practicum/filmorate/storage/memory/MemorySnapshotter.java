@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимки хранилищ в памяти на диск. При старте загружает снимок, если он есть, затем сохраняет
+ * новый с заданным интервалом и при остановке приложения. Снимок пишется во временный файл
+ * и атомарно подменяет предыдущий, в конце файла — контрольная сумма CRC32.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class MemorySnapshotter {
+    private static final int MAGIC = 0x464D5253;
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final Path path;
+    private final Duration interval;
+    private ScheduledExecutorService scheduler;
+
+    public MemorySnapshotter(InMemoryFilmStorage filmStorage,
+                             InMemoryUserStorage userStorage,
+                             @Value("${filmorate.storage.memory.snapshot-path:data/filmorate.snapshot}") Path path,
+                             @Value("${filmorate.storage.memory.snapshot-interval:5m}") Duration interval) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.path = path;
+        this.interval = interval;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (Files.exists(path)) {
+            long started = System.nanoTime();
+            load();
+            log.info("Хранилище в памяти загружено из снимка {} за {} мс", path,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+
+        if (interval.isZero() || interval.isNegative()) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "memory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("Снимки хранилища в памяти сохраняются в {} каждые {}", path, interval);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        snapshot();
+    }
+
+    /**
+     * Сохраняет снимок обоих хранилищ. Запись идёт без остановки хранилищ, поэтому снимок
+     * содержит каждое изменение, завершённое до его начала, и, возможно, часть параллельных.
+     */
+    public synchronized void snapshot() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+        try {
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                CRC32 crc = new CRC32();
+                BufferedOutputStream buffered = new BufferedOutputStream(new CheckedOutputStream(file, crc),
+                        BUFFER_SIZE);
+                SnapshotWriter out = new SnapshotWriter(buffered);
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                filmStorage.writeSnapshot(out);
+                userStorage.writeSnapshot(out);
+                out.flush();
+
+                new DataOutputStream(file).writeLong(crc.getValue());
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Заменяет содержимое хранилищ снимком. Контрольная сумма проверяется до разбора,
+     * чтобы повреждённый файл не затронул хранилища.
+     */
+    public synchronized void load() throws IOException {
+        verifyChecksum();
+
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+            SnapshotReader in = new SnapshotReader(file);
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Файл " + path + " не является снимком хранилища");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+
+            filmStorage.restoreSnapshot(in, version);
+            userStorage.restoreSnapshot(in);
+        }
+    }
+
+    private void verifyChecksum() throws IOException {
+        long remaining = Files.size(path) - Long.BYTES;
+
+        if (remaining < 0) {
+            throw new IOException("Снимок " + path + " повреждён: файл слишком короткий");
+        }
+
+        try (InputStream file = Files.newInputStream(path)) {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (remaining > 0) {
+                int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+
+            if (new DataInputStream(file).readLong() != crc.getValue()) {
+                throw new IOException("Снимок " + path + " повреждён: не совпадает контрольная сумма");
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            long started = System.nanoTime();
+            snapshot();
+            log.debug("Снимок хранилища в памяти сохранён за {} мс", (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Не удалось сохранить снимок хранилища в памяти", e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Чтение снимка, записанного {@link SnapshotWriter}.
+ */
+final class SnapshotReader {
+    private final DataInputStream in;
+
+    SnapshotReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    long readLong() throws IOException {
+        return in.readLong();
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Повреждённое число в снимке");
+    }
+
+    long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    int readCount() throws IOException {
+        long count = readVarLong();
+
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IOException("Повреждённая длина в снимке: " + count);
+        }
+        return (int) count;
+    }
+
+    String readString() throws IOException {
+        int length = readCount();
+
+        if (length == 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    LocalDate readDate() throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(readSignedVarLong()) : null;
+    }
+
+    long[] readSortedIds() throws IOException {
+        long[] ids = new long[readCount()];
+        long previous = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            previous += readVarLong();
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    int[] readSortedIntIds() throws IOException {
+        int[] ids = new int[readCount()];
+        int previous = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            previous += (int) readVarLong();
+            ids[i] = previous;
+        }
+        return ids;
+    }
+}
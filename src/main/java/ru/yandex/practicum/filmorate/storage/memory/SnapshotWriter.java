@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Компактная запись снимка: числа — переменной длины, отсортированные списки id — разностями
+ * соседних значений, строки — в UTF-8 с длиной впереди.
+ */
+final class SnapshotWriter {
+    private final DataOutputStream out;
+
+    SnapshotWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    void writeSignedVarLong(long value) throws IOException {
+        writeVarLong(value << 1 ^ value >> 63);
+    }
+
+    /**
+     * {@code null} записывается как длина 0, остальные строки — как длина + 1 и байты UTF-8.
+     */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    void writeDate(LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            writeSignedVarLong(value.toEpochDay());
+        }
+    }
+
+    /**
+     * Записывает возрастающий массив id: длину и разности соседних элементов.
+     */
+    void writeSortedIds(long[] ids) throws IOException {
+        writeVarLong(ids.length);
+        long previous = 0;
+
+        for (long id : ids) {
+            writeVarLong(id - previous);
+            previous = id;
+        }
+    }
+
+    void writeSortedIds(int[] ids) throws IOException {
+        writeVarLong(ids.length);
+        int previous = 0;
+
+        for (int id : ids) {
+            writeVarLong(id - previous);
+            previous = id;
+        }
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+}
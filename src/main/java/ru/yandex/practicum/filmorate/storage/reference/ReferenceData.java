@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import exception.NotFoundException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.RatingDbStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неизменяемый снимок справочников жанров и рейтингов MPA, загружаемый при старте.
+ * Жанры и рейтинги лежат в массивах по id, поэтому чтение не обращается к базе.
+ * После изменения справочников в базе снимок нужно обновить через {@link #refresh()}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReferenceData {
+    private final GenreDbStorage genreDbStorage;
+    private final RatingDbStorage ratingDbStorage;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void refresh() {
+        List<Genre> genres = List.copyOf(genreDbStorage.findAll());
+        List<Rating> ratings = List.copyOf(ratingDbStorage.findAll());
+
+        Genre[] genresById = new Genre[genres.stream().mapToInt(Genre::getId).max().orElse(0) + 1];
+        genres.forEach(genre -> genresById[genre.getId()] = genre);
+
+        Rating[] ratingsById = new Rating[ratings.stream().mapToInt(Rating::getId).max().orElse(0) + 1];
+        ratings.forEach(rating -> ratingsById[rating.getId()] = rating);
+
+        snapshot = new Snapshot(genres, genresById, ratings, ratingsById);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Номер снимка, растёт при каждом {@link #refresh()}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public Collection<Genre> getGenres() {
+        return snapshot.genres();
+    }
+
+    public Genre getGenre(int id) {
+        Genre genre = findGenre(id);
+
+        if (genre == null) {
+            throw new NotFoundException("Жанр с id = " + id + " не найден");
+        }
+        return genre;
+    }
+
+    public Genre findGenre(int id) {
+        Genre[] genresById = snapshot.genresById();
+        return id > 0 && id < genresById.length ? genresById[id] : null;
+    }
+
+    public Collection<Rating> getRatings() {
+        return snapshot.ratings();
+    }
+
+    public Rating getRating(int id) {
+        Rating rating = findRating(id);
+
+        if (rating == null) {
+            throw new NotFoundException("Рейтинг МРА с id = " + id + " не найден");
+        }
+        return rating;
+    }
+
+    public Rating findRating(int id) {
+        Rating[] ratingsById = snapshot.ratingsById();
+        return id > 0 && id < ratingsById.length ? ratingsById[id] : null;
+    }
+
+    private record Snapshot(List<Genre> genres, Genre[] genresById, List<Rating> ratings, Rating[] ratingsById) {
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Кэш пользователей по id поверх основного хранилища с ограничением по размеру и времени жизни.
+ * Запись вытесняется при обновлении пользователя. Друзья в {@link User} не хранятся,
+ * поэтому изменение дружбы закэшированного пользователя не затрагивает.
+ */
+@Repository("cachedUserStorage")
+@Qualifier("userStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "db", matchIfMissing = true)
+public class CachedUserStorage implements UserStorage {
+    private final UserStorage delegate;
+    private final Cache<Long, User> users;
+
+    public CachedUserStorage(@Qualifier("userDbStorage") UserStorage delegate,
+                             @Value("${filmorate.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${filmorate.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Collection<User> findAll(Set<UserField> fields) {
+        return delegate.findAll(fields);
+    }
+
+    @Override
+    public Collection<User> findPage(long afterId, int limit, Set<UserField> fields) {
+        return delegate.findPage(afterId, limit, fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        delegate.streamAll(consumer);
+    }
+
+    @Override
+    public User create(User user) {
+        return delegate.create(user);
+    }
+
+    @Override
+    public User update(User newUser) {
+        try {
+            return delegate.update(newUser);
+        } finally {
+            users.invalidate(newUser.getId());
+        }
+    }
+
+    @Override
+    public User getById(Long id) {
+        return users.get(id, delegate::getById);
+    }
+
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        delegate.addFriend(userId, friendId);
+    }
+
+    @Override
+    public void removeFriend(Long userId, Long friendId) {
+        delegate.removeFriend(userId, friendId);
+    }
+
+    @Override
+    public List<BatchItemResult<Friendship>> addFriends(List<Friendship> friendships) {
+        return delegate.addFriends(friendships);
+    }
+
+    @Override
+    public Collection<User> getFriends(Long userId) {
+        return delegate.getFriends(userId);
+    }
+
+    @Override
+    public Collection<User> getFriends(Long userId, Set<UserField> fields) {
+        return delegate.getFriends(userId, fields);
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long friendId) {
+        return delegate.getCommonFriends(userId, friendId);
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long friendId, Set<UserField> fields) {
+        return delegate.getCommonFriends(userId, friendId, fields);
+    }
+
+    @Override
+    public Collection<User> getFriendSuggestions(Long userId, int limit) {
+        return delegate.getFriendSuggestions(userId, limit);
+    }
+
+    public void invalidate(Long id) {
+        users.invalidate(id);
+    }
+
+    public CacheStats getStats() {
+        return users.stats();
+    }
+
+    public long getSize() {
+        return users.estimatedSize();
+    }
+}
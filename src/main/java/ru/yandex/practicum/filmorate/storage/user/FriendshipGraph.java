@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.index.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.index.LongTopK;
+import ru.yandex.practicum.filmorate.storage.index.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя отсортированный массив id друзей.
+ * Массивы не изменяются после публикации — при добавлении и удалении друга
+ * пользователю назначается новый массив. Читатели берут блокировку чтения только на время
+ * поиска массивов в карте, а пересечение списков и подсчёт рекомендаций идут уже без неё.
+ */
+@Component
+public class FriendshipGraph {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+    /**
+     * Сколько рёбер второго уровня просматривается при подборе рекомендаций.
+     */
+    static final int MAX_SCANNED_EDGES = 1_000_000;
+    /**
+     * Начиная с такого числа друзей обход второго уровня идёт параллельно.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private final Map<Long, long[]> friendsByUser = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Перестраивает граф целиком. Массивы друзей должны быть отсортированы по возрастанию.
+     */
+    public void rebuild(Map<Long, long[]> friends) {
+        lock.writeLock().lock();
+        try {
+            friendsByUser.clear();
+            friendsByUser.putAll(friends);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean addFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            long[] current = friendsByUser.getOrDefault(userId, EMPTY);
+            long[] updated = SortedLongArrays.insert(current, friendId);
+            friendsByUser.put(userId, updated);
+            return updated != current;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            long[] current = friendsByUser.getOrDefault(userId, EMPTY);
+            long[] updated = SortedLongArrays.remove(current, friendId);
+
+            if (updated.length == 0) {
+                friendsByUser.remove(userId);
+            } else {
+                friendsByUser.put(userId, updated);
+            }
+            return updated != current;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает отсортированный массив id друзей. Массив нельзя изменять.
+     */
+    public long[] getFriends(long userId) {
+        lock.readLock().lock();
+        try {
+            return friendsByUser.getOrDefault(userId, EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Общие друзья двух пользователей: слияние двух отсортированных массивов за O(n + m).
+     */
+    public long[] getCommonFriends(long userId, long otherId) {
+        return SortedLongArrays.intersect(getFriends(userId), getFriends(otherId));
+    }
+
+    /**
+     * Друзья друзей, которые ещё не в друзьях у пользователя, по убыванию числа общих друзей
+     * (при равенстве — по возрастанию id). Просматривается не более {@link #MAX_SCANNED_EDGES} рёбер,
+     * у пользователей с большим числом друзей списки друзей обходятся параллельно,
+     * если доступно больше одного процессора.
+     */
+    public long[] suggestFriends(long userId, int limit) {
+        long[] friends = getFriends(userId);
+
+        if (friends.length == 0 || limit <= 0) {
+            return EMPTY;
+        }
+
+        long[][] secondHop = new long[friends.length][];
+        lock.readLock().lock();
+        try {
+            long budget = MAX_SCANNED_EDGES;
+
+            for (int i = 0; i < friends.length; i++) {
+                long[] next = friendsByUser.getOrDefault(friends[i], EMPTY);
+                secondHop[i] = next.length <= budget ? next : Arrays.copyOf(next, (int) budget);
+                budget -= secondHop[i].length;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LongIntCounter mutual = LongIntCounter.countAll(secondHop, PARALLEL_THRESHOLD);
+
+        return top(mutual, userId, friends, limit);
+    }
+
+    private static long[] top(LongIntCounter mutual, long userId, long[] friends, int limit) {
+        LongTopK top = new LongTopK(limit);
+
+        mutual.forEach((candidate, count) -> {
+            if (top.accepts(candidate, count) && candidate != userId
+                    && !SortedLongArrays.contains(friends, candidate)) {
+                top.offer(candidate, count);
+            }
+        });
+        return top.drain();
+    }
+}
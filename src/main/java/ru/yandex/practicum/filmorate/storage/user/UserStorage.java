@@ -1,12 +1,35 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> findAll();
 
+    Collection<User> findPage(long afterId, int limit);
+
+    /**
+     * Как {@link #findAll()}: достаточно заполнить поля {@code fields}, остальные могут остаться пустыми.
+     */
+    default Collection<User> findAll(Set<UserField> fields) {
+        return findAll();
+    }
+
+    /**
+     * Как {@link #findPage(long, int)}: достаточно заполнить поля {@code fields}, остальные могут остаться пустыми.
+     */
+    default Collection<User> findPage(long afterId, int limit, Set<UserField> fields) {
+        return findPage(afterId, limit);
+    }
+
+    void streamAll(Consumer<User> consumer);
+
     User create(User user);
 
     User update(User newUser);
@@ -17,7 +40,19 @@ public interface UserStorage {
 
     void removeFriend(Long userId, Long friendId);
 
+    List<BatchItemResult<Friendship>> addFriends(List<Friendship> friendships);
+
     Collection<User> getFriends(Long userId);
 
+    default Collection<User> getFriends(Long userId, Set<UserField> fields) {
+        return getFriends(userId);
+    }
+
     Collection<User> getCommonFriends(Long userId,  Long friendId);
+
+    default Collection<User> getCommonFriends(Long userId, Long friendId, Set<UserField> fields) {
+        return getCommonFriends(userId, friendId);
+    }
+
+    Collection<User> getFriendSuggestions(Long userId, int limit);
 }
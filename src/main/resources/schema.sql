@@ -29,7 +29,9 @@ CREATE TABLE IF NOT EXISTS films (
     description VARCHAR(200),
     release_date DATE,
     duration INTEGER,
-    rating_id INTEGER REFERENCES ratings(id)
+    rating_id INTEGER REFERENCES ratings(id),
+    -- копия film_genres для чтения фильма одним запросом; NULL — ещё не заполнена
+    genre_ids INTEGER ARRAY
 );
 
 CREATE TABLE IF NOT EXISTS film_genres (
@@ -39,11 +41,16 @@ CREATE TABLE IF NOT EXISTS film_genres (
 );
 
 CREATE TABLE IF NOT EXISTS likes (
-    film_id INTEGER REFERENCES films(id) ON DELETE CASCADE,
-    user_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
-    PRIMARY KEY (film_id, user_id)
+    film_id INTEGER,
+    user_id INTEGER,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (film_id, user_id),
+    CONSTRAINT fk_likes_film FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
+    CONSTRAINT fk_likes_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS likes_created_at ON likes (created_at);
+
 CREATE TABLE IF NOT EXISTS friendship (
     user_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
     friend_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
@@ -0,0 +1,453 @@
+package ru.yandex.practicum.filmorate;
+
+import exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+/**
+ * Тесты контракта {@link UserStorage} и {@link FilmStorage}, общие для хранилищ в базе и в памяти.
+ * Наследники заполняют поля хранилищ в конструкторе. {@code @Transactional} объявлен здесь,
+ * потому что для унаследованных тестов транзакция ищется на классе, где они объявлены.
+ */
+@Transactional
+abstract class AbstractStorageTests {
+    protected UserStorage userStorage;
+    protected FilmStorage filmStorage;
+    protected FilmPopularityIndex popularityIndex;
+    protected ReferenceData referenceData;
+
+    @Test
+    public void testCreateAndFindUserById() {
+        User user = new User();
+        user.setEmail("test@mail.ru");
+        user.setLogin("Login");
+        user.setName("Name");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        User createdUser = userStorage.create(user);
+        Long generatedId = createdUser.getId();
+
+        Optional<User> userOptional = Optional.ofNullable(userStorage.getById(generatedId));
+
+        assertThat(userOptional)
+                .isPresent()
+                .hasValueSatisfying(u ->
+                        assertThat(u).hasFieldOrPropertyWithValue("id", generatedId)
+                );
+    }
+
+    @Test
+    public void testUpdateUser() {
+        User newUser = new User();
+        newUser.setEmail("user@email.ru");
+        newUser.setLogin("login");
+        newUser.setName("name");
+        newUser.setBirthday(LocalDate.of(2000, 1, 1));
+        User createdUser = userStorage.create(newUser);
+
+        createdUser.setName("new name");
+        userStorage.update(createdUser);
+
+        User updatedUser = userStorage.getById(createdUser.getId());
+        assertThat(updatedUser.getName()).isEqualTo("new name");
+    }
+
+    @Test
+    public void testAddAndRemoveFriend() {
+        User user1 = userStorage.create(createUser("user1@mail.ru", "login1"));
+        User user2 = userStorage.create(createUser("user2@mail.ru", "login2"));
+
+        userStorage.addFriend(user1.getId(), user2.getId());
+
+        Collection<User> friends = userStorage.getFriends(user1.getId());
+        assertThat(friends.size()).isEqualTo(1);
+        assertThat(friends.iterator().next().getId()).isEqualTo(user2.getId());
+
+        userStorage.removeFriend(user1.getId(), user2.getId());
+        assertThat(userStorage.getFriends(user1.getId()).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testCommonFriends() {
+        User user1 = userStorage.create(createUser("u1@mail.ru", "l1"));
+        User user2 = userStorage.create(createUser("u2@mail.ru", "l2"));
+        User common = userStorage.create(createUser("common@mail.ru", "common"));
+
+        userStorage.addFriend(user1.getId(), common.getId());
+        userStorage.addFriend(user2.getId(), common.getId());
+
+        Collection<User> commonFriends = userStorage.getCommonFriends(user1.getId(), user2.getId());
+        assertThat(commonFriends.size()).isEqualTo(1);
+        assertThat(commonFriends.iterator().next().getId()).isEqualTo(common.getId());
+    }
+
+    @Test
+    public void testCreateAndGetFilm() {
+        Film film = createTestFilm();
+        Film createdFilm = filmStorage.create(film);
+
+        Film savedFilm = filmStorage.getById(createdFilm.getId());
+
+        assertThat(savedFilm)
+                .isNotNull()
+                .hasFieldOrPropertyWithValue("name", "Test Film")
+                .hasFieldOrPropertyWithValue("description", "Description");
+
+        assertThat(savedFilm.getMpa().getId()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUpdateFilm() {
+        Film film = filmStorage.create(createTestFilm());
+
+        film.setName("Updated Name");
+        filmStorage.update(film);
+
+        Film updatedFilm = filmStorage.getById(film.getId());
+        assertThat(updatedFilm.getName()).isEqualTo("Updated Name");
+    }
+
+    @Test
+    public void testLikes() {
+        Film film = filmStorage.create(createTestFilm());
+        User user1 = userStorage.create(createUser("like1@mail.ru", "l1"));
+        User user2 = userStorage.create(createUser("like2@mail.ru", "l2"));
+
+        filmStorage.addLike(film.getId(), user1.getId());
+        filmStorage.addLike(film.getId(), user2.getId());
+
+        Collection<Film> popular = filmStorage.getMostPopular(10, null, null);
+        assertThat(popular.iterator().next().getId()).isEqualTo(film.getId());
+    }
+
+    @Test
+    public void testMostPopularFollowsLikeChanges() {
+        Film first = filmStorage.create(createTestFilm());
+        Film second = filmStorage.create(createTestFilm());
+        User user1 = userStorage.create(createUser("pop1@mail.ru", "pop1"));
+        User user2 = userStorage.create(createUser("pop2@mail.ru", "pop2"));
+
+        filmStorage.addLike(first.getId(), user1.getId());
+        filmStorage.addLike(second.getId(), user1.getId());
+        filmStorage.addLike(second.getId(), user2.getId());
+        filmStorage.addLike(second.getId(), user2.getId());
+        List<Long> popular = popularIds();
+        assertThat(popular.indexOf(second.getId())).isLessThan(popular.indexOf(first.getId()));
+
+        filmStorage.removeLike(second.getId(), user1.getId());
+        filmStorage.removeLike(second.getId(), user2.getId());
+        popular = popularIds();
+        assertThat(popular.indexOf(first.getId())).isLessThan(popular.indexOf(second.getId()));
+    }
+
+    @Test
+    public void testFindFilmsPage() {
+        Film first = filmStorage.create(createTestFilm());
+        Film second = filmStorage.create(createTestFilm());
+        Film third = filmStorage.create(createTestFilm());
+
+        List<Long> page = filmStorage.findPage(first.getId() - 1, 2).stream().map(Film::getId).toList();
+        assertThat(page).isEqualTo(List.of(first.getId(), second.getId()));
+
+        List<Long> next = filmStorage.findPage(second.getId(), 2).stream().map(Film::getId).toList();
+        assertThat(next).isEqualTo(List.of(third.getId()));
+    }
+
+    @Test
+    public void testStreamAllFilmsWithGenres() {
+        Film film = createTestFilm();
+        film.getGenres().add(new Genre(2, "Драма"));
+        film.getGenres().add(new Genre(1, "Комедия"));
+        Film created = filmStorage.create(film);
+        Film plain = filmStorage.create(createTestFilm());
+
+        List<Film> streamed = new ArrayList<>();
+        filmStorage.streamAll(streamed::add);
+
+        assertThat(streamed.size()).isEqualTo(2);
+        assertThat(streamed.get(0).getId()).isEqualTo(created.getId());
+        assertThat(streamed.get(0).getGenres().stream().map(Genre::getId).toList()).isEqualTo(List.of(1, 2));
+        assertThat(streamed.get(1).getId()).isEqualTo(plain.getId());
+        assertThat(streamed.get(1).getGenres().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testCreateFilmWithUnknownReferenceData() {
+        Film unknownMpa = createTestFilm();
+        unknownMpa.setMpa(new Rating(999, "X"));
+        assertThatThrownBy(() -> filmStorage.create(unknownMpa)).isInstanceOf(NotFoundException.class);
+
+        Film unknownGenre = createTestFilm();
+        unknownGenre.getGenres().add(new Genre(999, "X"));
+        assertThatThrownBy(() -> filmStorage.create(unknownGenre)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testAddLikesBatch() {
+        Film film = filmStorage.create(createTestFilm());
+        User user1 = userStorage.create(createUser("batch1@mail.ru", "batch1"));
+        User user2 = userStorage.create(createUser("batch2@mail.ru", "batch2"));
+        filmStorage.addLike(film.getId(), user1.getId());
+
+        List<BatchItemResult<Like>> results = filmStorage.addLikes(List.of(
+                new Like(film.getId(), user1.getId()),
+                new Like(film.getId(), user2.getId()),
+                new Like(film.getId(), user2.getId()),
+                new Like(film.getId(), -1L),
+                new Like(-1L, user1.getId())));
+
+        assertThat(results.stream().map(BatchItemResult::getStatus).toList()).isEqualTo(List.of(
+                BatchStatus.ALREADY_EXISTS, BatchStatus.CREATED, BatchStatus.ALREADY_EXISTS,
+                BatchStatus.NOT_FOUND, BatchStatus.NOT_FOUND));
+        assertThat(popularityIndex.getLikes(film.getId())).isEqualTo(2);
+    }
+
+    @Test
+    public void testAddFriendsBatch() {
+        User user1 = userStorage.create(createUser("fb1@mail.ru", "fb1"));
+        User user2 = userStorage.create(createUser("fb2@mail.ru", "fb2"));
+        User user3 = userStorage.create(createUser("fb3@mail.ru", "fb3"));
+
+        List<BatchItemResult<Friendship>> results = userStorage.addFriends(List.of(
+                new Friendship(user1.getId(), user2.getId()),
+                new Friendship(user1.getId(), user3.getId()),
+                new Friendship(user1.getId(), user2.getId()),
+                new Friendship(user1.getId(), -1L)));
+
+        assertThat(results.stream().map(BatchItemResult::getStatus).toList()).isEqualTo(List.of(
+                BatchStatus.CREATED, BatchStatus.CREATED, BatchStatus.ALREADY_EXISTS, BatchStatus.NOT_FOUND));
+        assertThat(userStorage.getFriends(user1.getId()).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAddLikeToUnknownFilmOrUser() {
+        Film film = filmStorage.create(createTestFilm());
+        User user = userStorage.create(createUser("fk@mail.ru", "fk"));
+
+        assertThatThrownBy(() -> filmStorage.addLike(-1L, user.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Фильм");
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), -1L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь");
+    }
+
+    @Test
+    public void testFriendSuggestionsFromStorage() {
+        User user = userStorage.create(createUser("suggest1@mail.ru", "suggest1"));
+        User friend1 = userStorage.create(createUser("suggest2@mail.ru", "suggest2"));
+        User friend2 = userStorage.create(createUser("suggest3@mail.ru", "suggest3"));
+        User popular = userStorage.create(createUser("suggest4@mail.ru", "suggest4"));
+        User other = userStorage.create(createUser("suggest5@mail.ru", "suggest5"));
+
+        userStorage.addFriend(user.getId(), friend1.getId());
+        userStorage.addFriend(user.getId(), friend2.getId());
+        userStorage.addFriend(friend1.getId(), other.getId());
+        userStorage.addFriend(friend1.getId(), popular.getId());
+        userStorage.addFriend(friend2.getId(), popular.getId());
+        userStorage.addFriend(friend2.getId(), user.getId());
+
+        assertThat(userStorage.getFriendSuggestions(user.getId(), 10).stream().map(User::getId).toList())
+                .isEqualTo(List.of(popular.getId(), other.getId()));
+    }
+
+    @Test
+    public void testRecommendationsFollowLikes() {
+        User user = userStorage.create(createUser("rec1@mail.ru", "rec1"));
+        User similar = userStorage.create(createUser("rec2@mail.ru", "rec2"));
+        Film shared = filmStorage.create(createTestFilm());
+        Film recommended = filmStorage.create(createTestFilm());
+
+        filmStorage.addLike(shared.getId(), user.getId());
+        filmStorage.addLike(shared.getId(), similar.getId());
+        filmStorage.addLike(recommended.getId(), similar.getId());
+
+        assertThat(filmStorage.getRecommendations(user.getId(), 10).stream().map(Film::getId).toList())
+                .isEqualTo(List.of(recommended.getId()));
+
+        filmStorage.addLike(recommended.getId(), user.getId());
+        assertThat(filmStorage.getRecommendations(user.getId(), 10).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testSearchFollowsCreateAndUpdate() {
+        Film film = createTestFilm();
+        film.setName("Неуловимые мстители");
+        film = filmStorage.create(film);
+
+        assertThat(filmStorage.search("неулов", EnumSet.of(FilmSearchField.TITLE), 10).stream()
+                .map(Film::getId).toList().contains(film.getId())).isTrue();
+
+        film.setName("Корона Российской империи");
+        filmStorage.update(film);
+
+        assertThat(filmStorage.search("неулов", EnumSet.of(FilmSearchField.TITLE), 10).stream()
+                .map(Film::getId).toList().contains(film.getId())).isFalse();
+        assertThat(filmStorage.search("корона", EnumSet.of(FilmSearchField.TITLE), 10).stream()
+                .map(Film::getId).toList().contains(film.getId())).isTrue();
+    }
+
+    @Test
+    public void testNullGenreIsSkippedOnCreateAndUpdate() {
+        Film film = createTestFilm();
+        film.setName("Пустой жанр");
+        film.getGenres().add(null);
+        film.getGenres().add(new Genre(1, "Комедия"));
+        film = filmStorage.create(film);
+        long filmId = film.getId();
+
+        assertThat(filmStorage.getById(filmId).getGenres().stream().map(Genre::getId).toList())
+                .isEqualTo(List.of(1));
+        assertThat(filmStorage.getMostPopular(Integer.MAX_VALUE, 1, null).stream()
+                .anyMatch(f -> f.getId() == filmId)).isTrue();
+        assertThat(filmStorage.search("пустой", EnumSet.of(FilmSearchField.TITLE), 10).stream()
+                .anyMatch(f -> f.getId() == filmId)).isTrue();
+
+        film.getGenres().clear();
+        film.getGenres().add(null);
+        filmStorage.update(film);
+
+        assertThat(filmStorage.getById(filmId).getGenres().isEmpty()).isTrue();
+        assertThat(filmStorage.getMostPopular(Integer.MAX_VALUE, 1, null).stream()
+                .anyMatch(f -> f.getId() == filmId)).isFalse();
+    }
+
+    @Test
+    public void testFilteredPopularFilmsFromStorage() {
+        User user = userStorage.create(createUser("popgenre@mail.ru", "popgenre"));
+        Film comedy = createTestFilm();
+        comedy.getGenres().add(new Genre(1, "Комедия"));
+        comedy.setReleaseDate(LocalDate.of(1977, 5, 25));
+        comedy = filmStorage.create(comedy);
+        Film drama = createTestFilm();
+        drama.getGenres().add(new Genre(2, "Драма"));
+        drama.setReleaseDate(LocalDate.of(1977, 1, 1));
+        drama = filmStorage.create(drama);
+        filmStorage.addLike(drama.getId(), user.getId());
+
+        List<Long> byYear = filmStorage.getMostPopular(1000, null, 1977).stream().map(Film::getId).toList();
+        assertThat(byYear.indexOf(drama.getId())).isLessThan(byYear.indexOf(comedy.getId()));
+
+        List<Long> comedies = filmStorage.getMostPopular(1000, 1, 1977).stream().map(Film::getId).toList();
+        assertThat(comedies.contains(comedy.getId())).isTrue();
+        assertThat(comedies.contains(drama.getId())).isFalse();
+
+        drama.getGenres().clear();
+        drama.getGenres().add(new Genre(1, "Комедия"));
+        filmStorage.update(drama);
+        comedies = filmStorage.getMostPopular(1000, 1, 1977).stream().map(Film::getId).toList();
+        assertThat(comedies.indexOf(drama.getId())).isLessThan(comedies.indexOf(comedy.getId()));
+    }
+
+    @Test
+    public void testGenresLoadedInChunksShareReferenceInstances() {
+        List<Long> ids = new ArrayList<>();
+
+        for (int i = 0; i < 70; i++) {
+            Film film = createTestFilm();
+            film.getGenres().add(new Genre(i % 6 + 1, null));
+            film.getGenres().add(new Genre((i + 1) % 6 + 1, null));
+            ids.add(filmStorage.create(film).getId());
+        }
+
+        List<Film> page = new ArrayList<>(filmStorage.findPage(ids.get(0) - 1, 70));
+        assertThat(page.size()).isEqualTo(70);
+
+        for (int i = 0; i < page.size(); i++) {
+            Film film = page.get(i);
+            List<Integer> expected = List.of(i % 6 + 1, (i + 1) % 6 + 1).stream().sorted().toList();
+
+            assertThat(film.getId()).isEqualTo(ids.get(i));
+            assertThat(film.getGenres().stream().map(Genre::getId).toList()).isEqualTo(expected);
+            assertThat(film.getGenres().iterator().next() == referenceData.getGenre(expected.get(0))).isTrue();
+        }
+    }
+
+    @Test
+    public void testTrendingFollowsLikes() {
+        User first = userStorage.create(createUser("first@trend.ru", "firstTrend"));
+        User second = userStorage.create(createUser("second@trend.ru", "secondTrend"));
+        Film quiet = filmStorage.create(createTestFilm());
+        Film hot = filmStorage.create(createTestFilm());
+
+        filmStorage.addLike(quiet.getId(), first.getId());
+        filmStorage.addLikes(List.of(new Like(hot.getId(), first.getId()), new Like(hot.getId(), second.getId())));
+        assertThat(trending(quiet, hot)).isEqualTo(List.of(hot.getId(), quiet.getId()));
+
+        filmStorage.removeLike(hot.getId(), first.getId());
+        filmStorage.removeLike(hot.getId(), second.getId());
+        assertThat(trending(quiet, hot)).isEqualTo(List.of(quiet.getId()));
+    }
+
+    /**
+     * Индекс трендов общий для тестов контекста, поэтому из ответа берутся только фильмы теста.
+     */
+    private List<Long> trending(Film... films) {
+        List<Long> ids = Arrays.stream(films).map(Film::getId).toList();
+
+        return filmStorage.getTrending(Duration.ofHours(24), Integer.MAX_VALUE).stream()
+                .map(Film::getId)
+                .filter(ids::contains)
+                .toList();
+    }
+
+    @Test
+    public void testCommonFriendsFollowRemoval() {
+        User user1 = userStorage.create(createUser("graph1@mail.ru", "graph1"));
+        User user2 = userStorage.create(createUser("graph2@mail.ru", "graph2"));
+        User common1 = userStorage.create(createUser("graph3@mail.ru", "graph3"));
+        User common2 = userStorage.create(createUser("graph4@mail.ru", "graph4"));
+
+        for (User common : List.of(common1, common2)) {
+            userStorage.addFriend(user1.getId(), common.getId());
+            userStorage.addFriend(user2.getId(), common.getId());
+        }
+        userStorage.removeFriend(user2.getId(), common1.getId());
+
+        assertThat(userStorage.getCommonFriends(user1.getId(), user2.getId()).stream().map(User::getId).toList())
+                .isEqualTo(List.of(common2.getId()));
+        assertThat(userStorage.getFriends(user1.getId()).stream().map(User::getId).toList())
+                .isEqualTo(List.of(common1.getId(), common2.getId()));
+    }
+
+    protected List<Long> popularIds() {
+        return filmStorage.getMostPopular(1000, null, null).stream().map(Film::getId).toList();
+    }
+
+    protected User createUser(String email, String login) {
+        User user = new User();
+        user.setEmail(email);
+        user.setLogin(login);
+        user.setName(login + "Name");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    protected Film createTestFilm() {
+        Film film = new Film();
+        film.setName("Test Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120L);
+        film.setMpa(new Rating(1, "G"));
+        return film;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.GenreController;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
+
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ConditionalGetTests {
+    private final ReferenceData referenceData = mock(ReferenceData.class);
+    private final FilmService filmService = mock(FilmService.class);
+    private final GenreService genreService = mock(GenreService.class);
+    private final EntityVersions versions = new EntityVersions(referenceData);
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(
+            new FilmController(filmService, versions, mock(NdjsonWriter.class)),
+            new GenreController(genreService, versions)).build();
+
+    @Test
+    public void testNotModifiedSkipsStorage() throws Exception {
+        Film film = new Film();
+        film.setId(1L);
+        film.setName("Фильм");
+        when(filmService.getById(1L)).thenReturn(film);
+
+        String tag = mvc.perform(get("/films/1")).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag)).andExpect(status().isNotModified());
+        verify(filmService, times(1)).getById(1L);
+
+        versions.filmChanged(2L);
+        mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag)).andExpect(status().isNotModified());
+        versions.filmChanged(1L);
+        MvcResult changed = mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk()).andReturn();
+        assertThat(changed.getResponse().getHeader(HttpHeaders.ETAG).equals(tag)).isFalse();
+        verify(filmService, times(2)).getById(1L);
+    }
+
+    @Test
+    public void testListTagsFollowGlobalVersions() throws Exception {
+        when(filmService.getMostPopular(anyInt(), any(), any(), any())).thenReturn(List.of());
+        when(genreService.findAll()).thenReturn(List.of(new Genre(1, "Комедия")));
+
+        String popular = mvc.perform(get("/films/popular")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String genres = mvc.perform(get("/genres")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popular))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genres)).andExpect(status().isNotModified());
+
+        versions.filmChanged(5L);
+        mvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popular)).andExpect(status().isOk());
+        mvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genres)).andExpect(status().isNotModified());
+
+        when(referenceData.getVersion()).thenReturn(1L);
+        mvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genres)).andExpect(status().isOk());
+        verify(filmService, times(2)).getMostPopular(anyInt(), any(), any(), any());
+        verify(genreService, times(2)).findAll();
+    }
+
+    @Test
+    public void testListTagsDependOnQueryParameters() throws Exception {
+        when(filmService.getMostPopular(anyInt(), any(), any(), any())).thenReturn(List.of());
+
+        String top5 = mvc.perform(get("/films/popular?count=5")).andReturn().getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String top10 = mvc.perform(get("/films/popular?count=10")).andReturn().getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String comedies = mvc.perform(get("/films/popular?count=5&genreId=1")).andReturn().getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String names = mvc.perform(get("/films/popular?count=5&fields=name")).andReturn().getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        assertThat(top5.equals(top10) || top5.equals(comedies) || top5.equals(names) || comedies.equals(names))
+                .isFalse();
+        assertThat(mvc.perform(get("/films/popular?count=5&fields=name,id")).andReturn().getResponse()
+                .getHeader(HttpHeaders.ETAG)).isEqualTo(names);
+        mvc.perform(get("/films/popular?count=10").header(HttpHeaders.IF_NONE_MATCH, top5))
+                .andExpect(status().isOk());
+        mvc.perform(get("/films/popular?count=5").header(HttpHeaders.IF_NONE_MATCH, top5))
+                .andExpect(status().isNotModified());
+
+        assertThat(versions.userListTag(1L, UserField.ALL).equals(versions.userListTag(2L, UserField.ALL)))
+                .isFalse();
+        assertThat(versions.userListTag(1L, 2L, UserField.ALL).equals(versions.userListTag(1L, 3L, UserField.ALL)))
+                .isFalse();
+    }
+}
@@ -1,151 +1,620 @@
 package ru.yandex.practicum.filmorate;
 
-import lombok.RequiredArgsConstructor;
+import exception.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
-import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Rating;
-import ru.yandex.practicum.filmorate.model.User;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.dao.BulkheadDataSource;
 import ru.yandex.practicum.filmorate.storage.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.FilmGenreIdsRebuilder;
+import ru.yandex.practicum.filmorate.storage.dao.FilmGenreLoader;
+import ru.yandex.practicum.filmorate.storage.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.dao.QueryCounter;
+import ru.yandex.practicum.filmorate.storage.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.StorageMetrics;
 import ru.yandex.practicum.filmorate.storage.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmField;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+import ru.yandex.practicum.filmorate.storage.user.CachedUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserField;
 
-import java.time.LocalDate;
-import java.util.Collection;
-import java.util.Optional;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({UserDbStorage.class, FilmDbStorage.class})
-class FilmorateApplicationTests {
-    private final UserDbStorage userStorage;
-    private final FilmDbStorage filmStorage;
+@Import({UserDbStorage.class, FilmDbStorage.class, FilmPopularityIndex.class,
+        GenreDbStorage.class, RatingDbStorage.class, ReferenceData.class, LikeWriteBuffer.class,
+        StorageMetrics.class, FriendshipGraph.class, FilmLikesIndex.class,
+        FilmSearchIndex.class, FilmTrendingIndex.class, FilmGenreLoader.class})
+class FilmorateApplicationTests extends AbstractStorageTests {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmLikesIndex likesIndex;
+    private final FilmTrendingIndex trendingIndex;
+
+    @Autowired
+    FilmorateApplicationTests(UserDbStorage userStorage, FilmDbStorage filmStorage,
+                              FilmPopularityIndex popularityIndex, ReferenceData referenceData,
+                              JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              FilmLikesIndex likesIndex, FilmTrendingIndex trendingIndex) {
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        this.referenceData = referenceData;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.likesIndex = likesIndex;
+        this.trendingIndex = trendingIndex;
+    }
 
     @Test
-    public void testCreateAndFindUserById() {
-        User user = new User();
-        user.setEmail("test@mail.ru");
-        user.setLogin("Login");
-        user.setName("Name");
-        user.setBirthday(LocalDate.of(2000, 1, 1));
+    public void testCachedUserStorageInvalidatesOnUpdate() {
+        CachedUserStorage cachedStorage = new CachedUserStorage(userStorage, 100, Duration.ofMinutes(1));
+        User user = userStorage.create(createUser("cached@mail.ru", "cached"));
 
-        User createdUser = userStorage.create(user);
-        Long generatedId = createdUser.getId();
+        cachedStorage.getById(user.getId());
+        cachedStorage.getById(user.getId());
+        assertThat(cachedStorage.getStats().hitCount()).isEqualTo(1);
+        assertThat(cachedStorage.getStats().missCount()).isEqualTo(1);
 
-        Optional<User> userOptional = Optional.ofNullable(userStorage.getById(generatedId));
+        User changed = createUser("cached@mail.ru", "cached");
+        changed.setId(user.getId());
+        changed.setName("changed");
+        cachedStorage.update(changed);
 
-        assertThat(userOptional)
-                .isPresent()
-                .hasValueSatisfying(u ->
-                        assertThat(u).hasFieldOrPropertyWithValue("id", generatedId)
-                );
+        assertThat(cachedStorage.getById(user.getId()).getName()).isEqualTo("changed");
+        assertThat(cachedStorage.getStats().missCount()).isEqualTo(2);
     }
 
     @Test
-    public void testUpdateUser() {
-        User newUser = new User();
-        newUser.setEmail("user@email.ru");
-        newUser.setLogin("login");
-        newUser.setName("name");
-        newUser.setBirthday(LocalDate.of(2000, 1, 1));
-        User createdUser = userStorage.create(newUser);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentLikesOfSamePair() throws Exception {
+        Film film = filmStorage.create(createTestFilm());
+        User user = userStorage.create(createUser("race@mail.ru", "race"));
+        int threads = 16;
+        int likesPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-        createdUser.setName("new name");
-        userStorage.update(createdUser);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
 
-        User updatedUser = userStorage.getById(createdUser.getId());
-        assertThat(updatedUser.getName()).isEqualTo("new name");
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < likesPerThread; j++) {
+                        filmStorage.addLike(film.getId(), user.getId());
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            Integer rows = jdbcTemplate.queryForObject("SELECT count(*) FROM likes WHERE film_id = ? AND user_id = ?",
+                    Integer.class, film.getId(), user.getId());
+            assertThat(rows).isEqualTo(1);
+            assertThat(popularityIndex.getLikes(film.getId())).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM films WHERE id = ?", film.getId());
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+        }
     }
 
     @Test
-    public void testAddAndRemoveFriend() {
-        User user1 = userStorage.create(createUser("user1@mail.ru", "login1"));
-        User user2 = userStorage.create(createUser("user2@mail.ru", "login2"));
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentLikeAndUnlikeKeepIndexesInSyncWithTable() throws Exception {
+        Film film = filmStorage.create(createTestFilm());
+        User user = userStorage.create(createUser("toggle@mail.ru", "toggle"));
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-        userStorage.addFriend(user1.getId(), user2.getId());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
 
-        Collection<User> friends = userStorage.getFriends(user1.getId());
-        assertThat(friends.size()).isEqualTo(1);
-        assertThat(friends.iterator().next().getId()).isEqualTo(user2.getId());
+            for (int i = 0; i < threads; i++) {
+                boolean adding = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        if (adding) {
+                            filmStorage.addLike(film.getId(), user.getId());
+                        } else {
+                            try {
+                                filmStorage.removeLike(film.getId(), user.getId());
+                            } catch (NotFoundException e) {
+                                // лайка сейчас нет
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
 
-        userStorage.removeFriend(user1.getId(), user2.getId());
-        assertThat(userStorage.getFriends(user1.getId()).isEmpty()).isTrue();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM likes WHERE film_id = ? AND user_id = ?",
+                    Long.class, film.getId(), user.getId());
+            boolean inLikesIndex = Arrays.stream(likesIndex.getLikedFilms(user.getId()))
+                    .anyMatch(id -> id == film.getId());
+
+            assertThat(popularityIndex.getLikes(film.getId())).isEqualTo(rows);
+            assertThat(inLikesIndex).isEqualTo(rows == 1);
+            assertThat(trendingIndex.getLikes(film.getId(), Duration.ofHours(24), System.currentTimeMillis()))
+                    .isEqualTo(rows);
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM films WHERE id = ?", film.getId());
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+        }
     }
 
     @Test
-    public void testCommonFriends() {
-        User user1 = userStorage.create(createUser("u1@mail.ru", "l1"));
-        User user2 = userStorage.create(createUser("u2@mail.ru", "l2"));
-        User common = userStorage.create(createUser("common@mail.ru", "common"));
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentAddAndRemoveFriendKeepGraphInSyncWithTable() throws Exception {
+        User user = userStorage.create(createUser("toggle1@mail.ru", "toggle1"));
+        User friend = userStorage.create(createUser("toggle2@mail.ru", "toggle2"));
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
 
-        userStorage.addFriend(user1.getId(), common.getId());
-        userStorage.addFriend(user2.getId(), common.getId());
+            for (int i = 0; i < threads; i++) {
+                boolean adding = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        if (adding) {
+                            try {
+                                userStorage.addFriend(user.getId(), friend.getId());
+                            } catch (DataAccessException e) {
+                                // связь уже есть
+                            }
+                        } else {
+                            userStorage.removeFriend(user.getId(), friend.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
 
-        Collection<User> commonFriends = userStorage.getCommonFriends(user1.getId(), user2.getId());
-        assertThat(commonFriends.size()).isEqualTo(1);
-        assertThat(commonFriends.iterator().next().getId()).isEqualTo(common.getId());
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            long rows = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM friendship WHERE user_id = ? AND friend_id = ?",
+                    Long.class, user.getId(), friend.getId());
+            assertThat((long) userStorage.getFriends(user.getId()).size()).isEqualTo(rows);
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM users WHERE id IN (?, ?)", user.getId(), friend.getId());
+        }
     }
 
     @Test
-    public void testCreateAndGetFilm() {
-        Film film = createTestFilm();
-        Film createdFilm = filmStorage.create(film);
+    public void testLikeWriteBufferCancelsAndFlushes() {
+        FilmPopularityIndex popularity = new FilmPopularityIndex();
+        FilmLikesIndex likes = new FilmLikesIndex();
+        LikeWriteBuffer buffer = new LikeWriteBuffer(jdbcTemplate, transactionTemplate,
+                new StorageMetrics(new SimpleMeterRegistry()), popularity, likes, true, 100, Duration.ofMinutes(1));
+        Film film = filmStorage.create(createTestFilm());
+        User user1 = userStorage.create(createUser("wb1@mail.ru", "wb1"));
+        User user2 = userStorage.create(createUser("wb2@mail.ru", "wb2"));
+        long likedAt = System.currentTimeMillis() - Duration.ofHours(3).toMillis();
+        popularity.register(film.getId(), FilmPopularityIndex.Attributes.NONE);
 
-        Film savedFilm = filmStorage.getById(createdFilm.getId());
+        // индекс лайков обновляется так же, как в FilmDbStorage: сразу после изменения в буфере
+        assertThat(buffer.like(film.getId(), user1.getId(), likedAt)).isTrue();
+        likes.likeAdded(film.getId(), user1.getId());
+        assertThat(buffer.like(film.getId(), user1.getId(), likedAt)).isFalse();
+        assertThat(buffer.unlike(film.getId(), user1.getId())).isTrue();
+        likes.likeRemoved(film.getId(), user1.getId());
+        assertThat(buffer.like(film.getId(), user2.getId(), likedAt)).isTrue();
+        likes.likeAdded(film.getId(), user2.getId());
+        assertThat(buffer.getPendingCount()).isEqualTo(1);
+        assertThat(buffer.getPendingLikedAt(film.getId(), user2.getId())).isEqualTo(likedAt);
+        assertThat(buffer.getPendingLikedAt(film.getId(), user1.getId())).isNull();
+        assertThatThrownBy(() -> buffer.like(film.getId(), -1L, likedAt)).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> buffer.like(-1L, user1.getId(), likedAt)).isInstanceOf(NotFoundException.class);
 
-        assertThat(savedFilm)
-                .isNotNull()
-                .hasFieldOrPropertyWithValue("name", "Test Film")
-                .hasFieldOrPropertyWithValue("description", "Description");
+        buffer.flush();
+        assertThat(buffer.getPendingCount()).isEqualTo(0);
+        assertThat(buffer.getPendingLikedAt(film.getId(), user2.getId())).isNull();
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM likes WHERE film_id = ?", Long.class, film.getId()))
+                .isEqualTo(List.of(user2.getId()));
+        assertThat(jdbcTemplate.queryForObject("SELECT created_at FROM likes WHERE film_id = ?", Timestamp.class,
+                film.getId()).getTime()).isEqualTo(likedAt);
 
-        assertThat(savedFilm.getMpa().getId()).isEqualTo(1);
+        // состояние записанного лайка берётся из индекса, а не из базы
+        QueryCounter.start();
+        try {
+            assertThat(buffer.unlike(film.getId(), user2.getId())).isTrue();
+            likes.likeRemoved(film.getId(), user2.getId());
+            assertThat(buffer.unlike(film.getId(), user2.getId())).isFalse();
+            assertThat(QueryCounter.current()).isZero();
+        } finally {
+            QueryCounter.stop();
+        }
+        buffer.flush();
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM likes WHERE film_id = ?", Long.class, film.getId()))
+                .isEqualTo(List.of());
     }
 
     @Test
-    public void testUpdateFilm() {
-        Film film = filmStorage.create(createTestFilm());
+    public void testFriendshipGraphCommonFriends() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.rebuild(Map.of(1L, new long[]{2, 5, 7, 9}));
+        graph.addFriend(3L, 9L);
+        graph.addFriend(3L, 2L);
+        graph.addFriend(3L, 4L);
+        graph.addFriend(3L, 7L);
+
+        assertThat(graph.addFriend(3L, 4L)).isFalse();
+        assertThat(graph.getFriends(3L)).containsExactly(2L, 4L, 7L, 9L);
+        assertThat(graph.getCommonFriends(1L, 3L)).containsExactly(2L, 7L, 9L);
+
+        assertThat(graph.removeFriend(1L, 7L)).isTrue();
+        assertThat(graph.removeFriend(1L, 7L)).isFalse();
+        assertThat(graph.getCommonFriends(1L, 3L)).containsExactly(2L, 9L);
+        assertThat(graph.getCommonFriends(1L, 42L)).isEmpty();
+    }
+
+    @Test
+    public void testFriendSuggestionsRankedByMutualFriends() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.rebuild(Map.of(
+                1L, new long[]{2, 3, 4},
+                2L, new long[]{1, 5, 6},
+                3L, new long[]{4, 5, 6, 7},
+                4L, new long[]{6}));
+
+        assertThat(graph.suggestFriends(1L, 10)).containsExactly(6L, 5L, 7L);
+        assertThat(graph.suggestFriends(1L, 2)).containsExactly(6L, 5L);
+        assertThat(graph.suggestFriends(7L, 10)).isEmpty();
+    }
+
+    @Test
+    public void testFriendSuggestionsForHighDegreeUser() {
+        Map<Long, long[]> friends = new HashMap<>();
+        long[] hubFriends = new long[1000];
+
+        for (int i = 0; i < hubFriends.length; i++) {
+            hubFriends[i] = 10 + i;
+            friends.put(10L + i, i % 2 == 0 ? new long[]{2, 3} : new long[]{3});
+        }
+        friends.put(1L, hubFriends);
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.rebuild(friends);
+
+        assertThat(graph.suggestFriends(1L, 10)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void testRecommendationsFromSimilarUsers() {
+        FilmLikesIndex index = new FilmLikesIndex();
+        index.rebuild(Map.of(
+                1L, new long[]{10, 11, 12},
+                2L, new long[]{10, 11, 13, 14},
+                3L, new long[]{12, 14, 15},
+                4L, new long[]{16}));
+
+        assertThat(index.recommend(1L, 10)).containsExactly(14L, 13L, 15L);
+        assertThat(index.recommend(1L, 1)).containsExactly(14L);
+        assertThat(index.recommend(4L, 10)).isEmpty();
+
+        index.likeRemoved(13L, 2L);
+        index.likeAdded(15L, 2L);
+        assertThat(index.recommend(1L, 10)).containsExactly(14L, 15L);
+    }
+
+    @Test
+    public void testSearchIndexRanksAndFoldsCase() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.rebuild(List.of(
+                searchFilm(1L, "Ёлки", "Новогодняя комедия"),
+                searchFilm(2L, "Star Wars", "A space opera about the Force"),
+                searchFilm(3L, "Interstellar", "Space travel through a wormhole"),
+                searchFilm(4L, "Stardust", "A fairy tale with a fallen star")));
+
+        assertThat(index.search("ЕЛКИ", EnumSet.allOf(FilmSearchField.class), 10)).containsExactly(1L);
+        assertThat(index.search("star", EnumSet.allOf(FilmSearchField.class), 10)).containsExactly(2L, 4L);
+        assertThat(index.search("space", EnumSet.of(FilmSearchField.DESCRIPTION), 10)).containsExactly(2L, 3L);
+        assertThat(index.search("space star", EnumSet.allOf(FilmSearchField.class), 10)).containsExactly(2L);
+        assertThat(index.search("space", EnumSet.of(FilmSearchField.TITLE), 10)).isEmpty();
+
+        index.put(searchFilm(3L, "Interstellar", "Star travel"));
+        assertThat(index.search("space", EnumSet.allOf(FilmSearchField.class), 10)).containsExactly(2L);
+        assertThat(index.search("star", EnumSet.allOf(FilmSearchField.class), 10)).containsExactly(2L, 4L, 3L);
+    }
+
+    @Test
+    public void testPopularityPartitionsByGenreAndYear() {
+        FilmPopularityIndex index = new FilmPopularityIndex();
+        index.rebuild(Map.of(1L, 5L, 2L, 3L, 3L, 4L, 4L, 1L), Map.of(
+                1L, new FilmPopularityIndex.Attributes(2000, Set.of(1)),
+                2L, new FilmPopularityIndex.Attributes(2000, Set.of(1, 2)),
+                3L, new FilmPopularityIndex.Attributes(2010, Set.of(2)),
+                4L, new FilmPopularityIndex.Attributes(null, Set.of())));
+
+        assertThat(index.getTop(10)).isEqualTo(List.of(1L, 3L, 2L, 4L));
+        assertThat(index.getTop(10, 2, null)).isEqualTo(List.of(3L, 2L));
+        assertThat(index.getTop(10, null, 2000)).isEqualTo(List.of(1L, 2L));
+        assertThat(index.getTop(10, 2, 2000)).isEqualTo(List.of(2L));
+        assertThat(index.getTop(10, 5, null)).isEqualTo(List.of());
+
+        index.likeAdded(2L);
+        index.likeAdded(2L);
+        assertThat(index.getTop(10, 2, null)).isEqualTo(List.of(2L, 3L));
+
+        index.register(3L, new FilmPopularityIndex.Attributes(2000, Set.of(1)));
+        assertThat(index.getTop(10, 2, null)).isEqualTo(List.of(2L));
+        assertThat(index.getTop(10, 1, 2000)).isEqualTo(List.of(1L, 2L, 3L));
+        assertThat(index.getLikes(3L)).isEqualTo(4L);
+    }
 
-        film.setName("Updated Name");
-        filmStorage.update(film);
+    @Test
+    public void testTrendingWindowsSlideWithoutStorage() {
+        long hour = Duration.ofHours(1).toMillis();
+        long start = 1000 * hour;
+        Duration day = Duration.ofDays(1);
+        FilmTrendingIndex index = new FilmTrendingIndex(Duration.ofHours(1), List.of(Duration.ofHours(2), day));
+
+        index.likeAdded(1L, start);
+        index.likeAdded(1L, start);
+        index.likeAdded(2L, start + hour);
+        index.likeAdded(3L, start + hour);
+        index.likeAdded(3L, start + hour);
+        index.likeAdded(3L, start + hour);
+        index.likeRemoved(3L, start + hour);
+
+        assertThat(index.getTop(day, 10, start + hour)).isEqualTo(List.of(1L, 3L, 2L));
+        assertThat(index.getTop(Duration.ofHours(2), 2, start + hour)).isEqualTo(List.of(1L, 3L));
+
+        assertThat(index.getTop(Duration.ofHours(2), 10, start + 2 * hour)).isEqualTo(List.of(3L, 2L));
+        assertThat(index.getLikes(1L, day, start + 2 * hour)).isEqualTo(2L);
+
+        index.likeRemoved(3L, null);
+        assertThat(index.getTop(day, 10, start + 24 * hour)).isEqualTo(List.of(2L, 3L));
+        assertThat(index.getTop(day, 10, start + 25 * hour).isEmpty()).isTrue();
+
+        index.likeAdded(4L, start + 100 * hour);
+        assertThat(index.getTop(day, 10, start + 100 * hour)).isEqualTo(List.of(4L));
+        assertThatThrownBy(() -> index.getTop(Duration.ofHours(3), 10, start))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testTrendingLoadsRecentLikesAndFollowsRemoval() {
+        User user = userStorage.create(createUser("trend@mail.ru", "trend"));
+        Film old = filmStorage.create(createTestFilm());
+        Film recent = filmStorage.create(createTestFilm());
+
+        long before = System.currentTimeMillis();
+        filmStorage.addLike(old.getId(), user.getId());
+        filmStorage.addLike(recent.getId(), user.getId());
+        long likedAt = jdbcTemplate.queryForObject("SELECT created_at FROM likes WHERE film_id = ?", Timestamp.class,
+                recent.getId()).getTime();
+        // время пишет приложение, а не CURRENT_TIMESTAMP транзакции теста
+        assertThat(likedAt >= before && likedAt <= System.currentTimeMillis()).isTrue();
+        jdbcTemplate.update("UPDATE likes SET created_at = DATEADD('DAY', -30, CURRENT_TIMESTAMP) WHERE film_id = ?",
+                old.getId());
+        ((FilmDbStorage) filmStorage).loadTrending();
+
+        assertThat(filmStorage.getTrending(Duration.ofDays(7), 10).stream().map(Film::getId).toList())
+                .isEqualTo(List.of(recent.getId()));
 
-        Film updatedFilm = filmStorage.getById(film.getId());
-        assertThat(updatedFilm.getName()).isEqualTo("Updated Name");
+        filmStorage.removeLike(recent.getId(), user.getId());
+        assertThat(filmStorage.getTrending(Duration.ofDays(7), 10).isEmpty()).isTrue();
+        assertThatThrownBy(() -> filmStorage.removeLike(recent.getId(), user.getId()))
+                .isInstanceOf(NotFoundException.class);
     }
 
     @Test
-    public void testLikes() {
+    public void testQueryCounterCountsStorageQueries() {
         Film film = filmStorage.create(createTestFilm());
-        User user1 = userStorage.create(createUser("like1@mail.ru", "l1"));
-        User user2 = userStorage.create(createUser("like2@mail.ru", "l2"));
 
-        filmStorage.addLike(film.getId(), user1.getId());
-        filmStorage.addLike(film.getId(), user2.getId());
+        QueryCounter.start();
+        try {
+            filmStorage.getById(film.getId());
+            assertThat(QueryCounter.current()).isEqualTo(1);
+        } finally {
+            assertThat(QueryCounter.stop()).isEqualTo(1);
+        }
+        assertThat(QueryCounter.current()).isZero();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testQueryCounterCountsParallelGenreChunks() {
+        FilmGenreLoader loader = new FilmGenreLoader(jdbcTemplate, referenceData,
+                new StorageMetrics(new SimpleMeterRegistry()), 4);
+        List<Film> films = new ArrayList<>();
 
-        Collection<Film> popular = filmStorage.getMostPopular(10);
-        assertThat(popular.iterator().next().getId()).isEqualTo(film.getId());
+        for (long id = 1; id <= 1_200; id++) {
+            Film film = new Film();
+            film.setId(-id);
+            films.add(film);
+        }
+
+        QueryCounter.start();
+        try {
+            loader.load(films);
+            assertThat(QueryCounter.current()).isEqualTo(3);
+        } finally {
+            QueryCounter.stop();
+            loader.stop();
+        }
     }
 
-    private User createUser(String email, String login) {
-        User user = new User();
-        user.setEmail(email);
-        user.setLogin(login);
-        user.setName(login + "Name");
-        user.setBirthday(LocalDate.of(1990, 1, 1));
-        return user;
+    @Test
+    public void testStreamAllReadsPagesWithGenres() {
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, rating_id) " +
+                "SELECT 'Фильм ' || x, 'Описание', DATE '2000-01-01', 90, 1 FROM SYSTEM_RANGE(1, 1001)");
+        long lastId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM films", Long.class);
+        jdbcTemplate.update("INSERT INTO film_genres (film_id, genre_id) VALUES (?, 2)", lastId);
+
+        List<Film> streamed = new ArrayList<>();
+        QueryCounter.start();
+        try {
+            filmStorage.streamAll(streamed::add);
+            // три страницы (500, 500, 1) и по запросу жанров на страницу: genre_ids у этих строк пуст
+            assertThat(QueryCounter.current()).isEqualTo(6);
+        } finally {
+            QueryCounter.stop();
+        }
+
+        assertThat(streamed.size()).isEqualTo(1001);
+        assertThat(streamed.getLast().getId()).isEqualTo(lastId);
+        assertThat(streamed.getLast().getGenres().stream().map(Genre::getId).toList()).isEqualTo(List.of(2));
     }
 
-    private Film createTestFilm() {
+    @Test
+    public void testGenreIdsFallbackAndRebuild() {
+        Film film = createTestFilm();
+        film.getGenres().add(new Genre(3, null));
+        film.getGenres().add(new Genre(1, null));
+        filmStorage.create(film);
+        Film withoutGenres = filmStorage.create(createTestFilm());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT CARDINALITY(genre_ids) FROM films WHERE id = ?",
+                Integer.class, film.getId())).isEqualTo(2);
+        jdbcTemplate.update("UPDATE films SET genre_ids = NULL");
+
+        QueryCounter.start();
+        try {
+            assertThat(filmStorage.getById(film.getId()).getGenres().size()).isEqualTo(2);
+            assertThat(QueryCounter.current()).isEqualTo(2);
+        } finally {
+            QueryCounter.stop();
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FilmGenreIdsRebuilder rebuilder = new FilmGenreIdsRebuilder(jdbcTemplate, transactionTemplate,
+                new StorageMetrics(registry), false, 1);
+        assertThat(rebuilder.rebuild() >= 2).isTrue();
+        assertThat(registry.get(StorageMetrics.QUERY_TIMER).tag("operation", "film.rebuildGenreIdsMaxId")
+                .timer().count()).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films WHERE genre_ids IS NULL",
+                Integer.class)).isZero();
+
+        QueryCounter.start();
+        try {
+            Film loaded = filmStorage.getById(film.getId());
+            assertThat(loaded.getGenres().stream().map(Genre::getId).toList()).isEqualTo(List.of(1, 3));
+            assertThat(loaded.getGenres().iterator().next().getName()).isEqualTo("Комедия");
+            assertThat(filmStorage.getById(withoutGenres.getId()).getGenres().isEmpty()).isTrue();
+            assertThat(QueryCounter.current()).isEqualTo(2);
+        } finally {
+            QueryCounter.stop();
+        }
+    }
+
+    @Test
+    public void testSparseFieldsSkipColumnsAndGenres() {
+        Film film = createTestFilm();
+        film.getGenres().add(new Genre(1, null));
+        filmStorage.create(film);
+
+        QueryCounter.start();
+        try {
+            List<Film> page = new ArrayList<>(filmStorage.findPage(film.getId() - 1, 1,
+                    EnumSet.of(FilmField.ID, FilmField.NAME)));
+            assertThat(QueryCounter.current()).isEqualTo(1);
+
+            assertThat(page.getFirst().getName()).isEqualTo("Test Film");
+            assertThat(page.getFirst().getDescription()).isNull();
+            assertThat(page.getFirst().getMpa()).isNull();
+            assertThat(page.getFirst().getGenres().isEmpty()).isTrue();
+        } finally {
+            QueryCounter.stop();
+        }
+
+        Film full = filmStorage.findPage(film.getId() - 1, 1, EnumSet.of(FilmField.GENRES, FilmField.MPA))
+                .iterator().next();
+        assertThat(full.getName()).isNull();
+        assertThat(full.getMpa().getName()).isEqualTo("G");
+        assertThat(full.getGenres().size()).isEqualTo(1);
+
+        User user = userStorage.create(createUser("sparse@mail.ru", "sparse"));
+        User friend = userStorage.create(createUser("friend@mail.ru", "friend"));
+        userStorage.addFriend(user.getId(), friend.getId());
+
+        User sparse = userStorage.getFriends(user.getId(), EnumSet.of(UserField.ID, UserField.LOGIN))
+                .iterator().next();
+        assertThat(sparse.getId()).isEqualTo(friend.getId());
+        assertThat(sparse.getLogin()).isEqualTo("friend");
+        assertThat(sparse.getEmail()).isNull();
+        assertThat(sparse.getBirthday()).isNull();
+    }
+
+    @Test
+    public void testBulkheadQueuesAndReleasesConnections() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BulkheadDataSource bulkhead = new BulkheadDataSource(jdbcTemplate.getDataSource(), 1,
+                Duration.ofMillis(100), registry);
+
+        try (Connection connection = bulkhead.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+            assertThat(bulkhead.getActiveCount()).isEqualTo(1);
+            assertThatThrownBy(bulkhead::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        }
+        assertThat(bulkhead.getActiveCount()).isZero();
+
+        Connection connection = bulkhead.getConnection();
+        connection.close();
+        connection.close();
+        assertThat(bulkhead.getActiveCount()).isZero();
+        assertThat(registry.get(BulkheadDataSource.WAIT_TIMER).timer().count()).isEqualTo(3L);
+    }
+
+
+    private Film searchFilm(long id, String name, String description) {
         Film film = new Film();
-        film.setName("Test Film");
-        film.setDescription("Description");
-        film.setReleaseDate(LocalDate.of(2000, 1, 1));
-        film.setDuration(120L);
-        film.setMpa(new Rating(1, "G"));
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
         return film;
     }
 }
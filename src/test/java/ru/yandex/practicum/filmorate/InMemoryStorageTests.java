@@ -0,0 +1,271 @@
+package ru.yandex.practicum.filmorate;
+
+import exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.StorageMetrics;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchField;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
+import ru.yandex.practicum.filmorate.storage.index.ConcurrentLongMap;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.Mutation;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.memory.MemorySnapshotter;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({ReferenceData.class, GenreDbStorage.class, RatingDbStorage.class, StorageMetrics.class})
+class InMemoryStorageTests extends AbstractStorageTests {
+    @TempDir
+    Path directory;
+
+    @Autowired
+    InMemoryStorageTests(ReferenceData referenceData) {
+        this.referenceData = referenceData;
+        this.popularityIndex = new FilmPopularityIndex();
+        this.userStorage = new InMemoryUserStorage(new FriendshipGraph());
+        this.filmStorage = newFilmStorage(popularityIndex, (InMemoryUserStorage) userStorage);
+    }
+
+    @Test
+    public void testSnapshotRestoresStoragesAndIndexes() throws IOException {
+        User user = userStorage.create(createUser("snap1@mail.ru", "snap1"));
+        User similar = userStorage.create(createUser("snap2@mail.ru", "snap2"));
+        User friend = userStorage.create(createUser("snap3@mail.ru", "snap3"));
+        Film shared = createTestFilm();
+        shared.setName("Снимок «Ёлки»");
+        shared.getGenres().add(new Genre(2, null));
+        shared = filmStorage.create(shared);
+        Film recommended = filmStorage.create(createTestFilm());
+        filmStorage.addLike(shared.getId(), user.getId());
+        filmStorage.addLike(shared.getId(), similar.getId());
+        filmStorage.addLike(recommended.getId(), similar.getId());
+        userStorage.addFriend(user.getId(), friend.getId());
+        userStorage.addFriend(similar.getId(), friend.getId());
+
+        Path path = directory.resolve("filmorate.snapshot");
+        new MemorySnapshotter((InMemoryFilmStorage) filmStorage, (InMemoryUserStorage) userStorage, path,
+                Duration.ZERO).snapshot();
+
+        FilmPopularityIndex restoredPopularity = new FilmPopularityIndex();
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage(new FriendshipGraph());
+        InMemoryFilmStorage restoredFilms = newFilmStorage(restoredPopularity, restoredUsers);
+        new MemorySnapshotter(restoredFilms, restoredUsers, path, Duration.ZERO).load();
+
+        assertThat(restoredFilms.getById(shared.getId())).isEqualTo(filmStorage.getById(shared.getId()));
+        assertThat(restoredUsers.getById(user.getId())).isEqualTo(userStorage.getById(user.getId()));
+        assertThat(restoredPopularity.getLikes(shared.getId())).isEqualTo(2L);
+        assertThat(restoredFilms.getMostPopular(10, 2, 2000).stream().map(Film::getId).toList())
+                .isEqualTo(List.of(shared.getId()));
+        assertThat(restoredFilms.getRecommendations(user.getId(), 10).stream().map(Film::getId).toList())
+                .isEqualTo(List.of(recommended.getId()));
+        assertThat(restoredFilms.getTrending(Duration.ofHours(24), 10).stream().map(Film::getId).toList())
+                .isEqualTo(List.of(shared.getId(), recommended.getId()));
+        assertThat(restoredFilms.search("елки", EnumSet.of(FilmSearchField.TITLE), 10).stream()
+                .map(Film::getId).toList()).isEqualTo(List.of(shared.getId()));
+        assertThat(restoredUsers.getCommonFriends(user.getId(), similar.getId()).stream().map(User::getId).toList())
+                .isEqualTo(List.of(friend.getId()));
+        assertThat(restoredFilms.create(createTestFilm()).getId()).isEqualTo(recommended.getId() + 1);
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        assertThatThrownBy(() -> new MemorySnapshotter(restoredFilms, restoredUsers, path, Duration.ZERO).load())
+                .isInstanceOf(IOException.class);
+        assertThat(restoredFilms.getById(shared.getId()).getName()).isEqualTo("Снимок «Ёлки»");
+    }
+
+    @Test
+    public void testRemoveLikeUnlikesBucketOfThatLike() throws InterruptedException {
+        FilmTrendingIndex trending = new FilmTrendingIndex(Duration.ofMillis(100), List.of(Duration.ofSeconds(1)));
+        InMemoryUserStorage users = new InMemoryUserStorage(new FriendshipGraph());
+        InMemoryFilmStorage films = new InMemoryFilmStorage(referenceData, new FilmPopularityIndex(),
+                new FilmLikesIndex(), new FilmSearchIndex(), trending, users);
+        Film film = films.create(createTestFilm());
+        User early = users.create(createUser("early@mail.ru", "early"));
+        User late = users.create(createUser("late@mail.ru", "late"));
+
+        films.addLike(film.getId(), early.getId());
+        long earlyLikedAt = System.currentTimeMillis();
+        Thread.sleep(250);
+        films.addLike(film.getId(), late.getId());
+        films.removeLike(film.getId(), early.getId());
+
+        // корзина раннего лайка уже вышла из окна, позднего — ещё нет
+        assertThat(trending.getLikes(film.getId(), Duration.ofSeconds(1), earlyLikedAt / 100 * 100 + 1000))
+                .isEqualTo(1L);
+    }
+
+    @Test
+    public void testConcurrentLikesKeepIndexesConsistent() throws Exception {
+        List<Long> films = new ArrayList<>();
+        List<Long> users = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            films.add(filmStorage.create(createTestFilm()).getId());
+            users.add(userStorage.create(createUser("race" + i + "@mail.ru", "race" + i)).getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (Long filmId : films) {
+                        for (Long userId : users) {
+                            filmStorage.addLike(filmId, userId);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (Long filmId : films) {
+            assertThat(popularityIndex.getLikes(filmId)).isEqualTo(users.size());
+        }
+        filmStorage.removeLike(films.get(0), users.get(0));
+        assertThat(popularityIndex.getLikes(films.get(0))).isEqualTo(users.size() - 1);
+    }
+
+    @Test
+    public void testJournalReplaysConcurrentChangesInAppliedOrder() throws Exception {
+        MutationJournal journal = new MutationJournal(directory.resolve("journal"), DataSize.ofMegabytes(1), false);
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        // запоминает порядок, в котором хранилище применило изменения, и уступает поток до записи в журнал
+        FilmStorage recording = Mockito.mock(FilmStorage.class, invocation -> {
+            try {
+                Object result = invocation.getMethod().invoke(filmStorage, invocation.getArguments());
+                switch (invocation.getMethod().getName()) {
+                    case "update" -> applied.add(((Film) result).getName());
+                    case "addLike", "removeLike" -> applied.add(invocation.getMethod().getName());
+                    default -> {
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                Thread.yield();
+            }
+        });
+        JournaledFilmStorage storage = new JournaledFilmStorage(recording, journal);
+        Film film = storage.create(createTestFilm());
+        User user = userStorage.create(createUser("journal@mail.ru", "journal"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int threadId = thread;
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < 200; round++) {
+                        Film changed = createTestFilm();
+                        changed.setId(film.getId());
+                        changed.setName("Поток " + threadId + ", шаг " + round);
+                        storage.update(changed);
+
+                        if ((threadId + round) % 2 == 0) {
+                            storage.addLike(film.getId(), user.getId());
+                        } else {
+                            try {
+                                storage.removeLike(film.getId(), user.getId());
+                            } catch (NotFoundException e) {
+                                // лайк уже снят другим потоком, в журнал ничего не попало
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> likes = new ArrayList<>();
+        journal.replay(0, entry -> {
+            if (entry.mutation() instanceof Mutation.FilmUpdated updated) {
+                names.add(updated.film().getName());
+            } else if (entry.mutation() instanceof Mutation.LikeAdded) {
+                likes.add("addLike");
+            } else if (entry.mutation() instanceof Mutation.LikeRemoved) {
+                likes.add("removeLike");
+            }
+        });
+        journal.close();
+
+        assertThat(names).isEqualTo(applied.stream().filter(name -> name.startsWith("Поток")).toList());
+        assertThat(likes).isEqualTo(applied.stream().filter(name -> !name.startsWith("Поток")).toList());
+        assertThat(names.getLast()).isEqualTo(storage.getById(film.getId()).getName());
+        assertThat(likes.getLast().equals("addLike")).isEqualTo(popularityIndex.getLikes(film.getId()) == 1);
+    }
+
+    @Test
+    public void testConcurrentLongMapMatchesHashMap() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(0);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(5_000);
+
+            if (random.nextInt(3) == 0) {
+                map.compute(key, (k, current) -> null);
+                expected.remove(key);
+            } else {
+                map.put(key, (long) i);
+                expected.put(key, (long) i);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 5_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        assertThat(map.get(-1)).isNull();
+        assertThatThrownBy(() -> map.put(-1, 1L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private InMemoryFilmStorage newFilmStorage(FilmPopularityIndex popularity, InMemoryUserStorage users) {
+        return new InMemoryFilmStorage(referenceData, popularity, new FilmLikesIndex(), new FilmSearchIndex(),
+                new FilmTrendingIndex(Duration.ofMinutes(5), List.of(Duration.ofHours(24))), users);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import exception.ValidationException;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.controller.json.FilmorateJsonModule;
+import ru.yandex.practicum.filmorate.controller.json.SparseFilms;
+import ru.yandex.practicum.filmorate.controller.json.SparseUsers;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class JsonSerializationTests {
+    @Test
+    public void testFastSerializersMatchDefaultOutput() throws Exception {
+        List<Object> values = new ArrayList<>();
+
+        Film film = new Film();
+        film.setId(42L);
+        film.setName("«Ёлки» \"2\"\n\t\\ 🎄");
+        film.setDescription("</script> \u0001 описание");
+        film.setReleaseDate(LocalDate.of(1895, 12, 28));
+        film.setDuration(Long.MAX_VALUE);
+        film.getGenres().add(new Genre(1, "Комедия"));
+        film.getGenres().add(new Genre(2, null));
+        film.setMpa(new Rating(3, "PG-13"));
+        values.add(film);
+
+        Film empty = new Film();
+        empty.setGenres(null);
+        values.add(empty);
+
+        Film farFuture = new Film();
+        farFuture.setReleaseDate(LocalDate.of(10_000, 1, 1));
+        values.add(farFuture);
+
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("user@mail.ru");
+        user.setLogin("логин");
+        user.setBirthday(LocalDate.of(-5, 3, 1));
+        values.add(user);
+        values.add(new User());
+
+        values.add(List.of(film, empty));
+        values.add(Map.of("user", user, "genre", new Genre(5, "Документальный")));
+        values.add(new BatchItemResult<>(new Like(1L, 2L), BatchStatus.CREATED, null));
+
+        for (boolean timestamps : new boolean[]{false, true}) {
+            ObjectMapper reference = JsonMapper.builder()
+                    .addModule(new JavaTimeModule())
+                    .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, timestamps)
+                    .build();
+            ObjectMapper fast = reference.copy().registerModule(new FilmorateJsonModule());
+            assertThat(fast.getSerializerProviderInstance().findValueSerializer(Film.class).getClass().getSimpleName())
+                    .isEqualTo("FilmSerializer");
+
+            for (Object value : values) {
+                String expected = new String(reference.writeValueAsBytes(value));
+                String actual = new String(fast.writeValueAsBytes(value));
+
+                assertThat(actual).isEqualTo(expected);
+                assertThat(fast.writerWithDefaultPrettyPrinter().writeValueAsString(value))
+                        .isEqualTo(reference.writerWithDefaultPrettyPrinter().writeValueAsString(value));
+            }
+        }
+    }
+
+    @Test
+    public void testSparseListsWriteOnlyRequestedFields() throws Exception {
+        Film film = new Film();
+        film.setId(1L);
+        film.setName("Фильм");
+        film.getGenres().add(new Genre(1, "Комедия"));
+        User user = new User();
+        user.setId(2L);
+        user.setLogin("login");
+
+        ObjectMapper mapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+        assertThat(mapper.writeValueAsString(new SparseFilms(List.of(film),
+                FilmService.parseFields(List.of("name", "genres")))))
+                .isEqualTo("[{\"id\":1,\"name\":\"Фильм\",\"genres\":[{\"id\":1,\"name\":\"Комедия\"}]}]");
+        assertThat(mapper.writeValueAsString(new SparseUsers(List.of(user),
+                UserService.parseFields(List.of("login", "birthday")))))
+                .isEqualTo("[{\"id\":2,\"login\":\"login\",\"birthday\":null}]");
+        assertThatThrownBy(() -> FilmService.parseFields(List.of("likes")))
+                .isInstanceOf(ValidationException.class);
+    }
+}
@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.journal.JournalEntry;
+import ru.yandex.practicum.filmorate.storage.journal.JournalReader;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.Mutation;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class MutationJournalTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplayAcrossSegmentsAndReopen() throws IOException {
+        Film film = new Film();
+        film.setId(1L);
+        film.setName("Журнал «Ёлки»");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(90L);
+        film.setMpa(new Rating(2, null));
+        film.getGenres().add(new Genre(1, null));
+        film.getGenres().add(new Genre(3, null));
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("journal@mail.ru");
+        user.setLogin("journal");
+
+        List<Mutation> expected = new ArrayList<>(List.of(new Mutation.FilmCreated(film),
+                new Mutation.UserCreated(user), new Mutation.FriendAdded(7, 8), new Mutation.FriendRemoved(7, 8)));
+        for (long i = 0; i < 200; i++) {
+            expected.add(i % 2 == 0 ? new Mutation.LikeAdded(1, i) : new Mutation.LikeRemoved(1, i));
+        }
+
+        MutationJournal journal = new MutationJournal(directory, DataSize.ofKilobytes(1), false);
+        List<Long> offsets = new ArrayList<>();
+        expected.forEach(mutation -> offsets.add(journal.append(mutation)));
+        journal.close();
+        assertThat(journal.segmentCount() > 1).isTrue();
+
+        MutationJournal reopened = new MutationJournal(directory, DataSize.ofKilobytes(1), false);
+        List<Mutation> replayed = new ArrayList<>();
+        long next = reopened.replay(0, entry -> replayed.add(entry.mutation()));
+
+        assertThat(replayed).isEqualTo(expected);
+        assertThat(next).isEqualTo(journal.endOffset());
+        assertThat(reopened.endOffset()).isEqualTo(journal.endOffset());
+
+        List<Mutation> tail = new ArrayList<>();
+        reopened.replay(offsets.get(150), entry -> tail.add(entry.mutation()));
+        assertThat(tail).isEqualTo(expected.subList(150, expected.size()));
+        assertThat(reopened.append(new Mutation.LikeAdded(2, 2))).isEqualTo(next);
+        assertThatThrownBy(() -> reopened.replay(offsets.get(1) + 1, entry -> { }))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testTornTailIsDiscardedOnOpen() throws IOException {
+        MutationJournal journal = new MutationJournal(directory, DataSize.ofKilobytes(64), false);
+        journal.append(new Mutation.LikeAdded(1, 1));
+        long last = journal.append(new Mutation.LikeAdded(1, 2));
+        journal.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[(int) journal.endOffset() - 1] ^= 1;
+        Files.write(segment, bytes);
+
+        MutationJournal reopened = new MutationJournal(directory, DataSize.ofKilobytes(64), false);
+        assertThat(reopened.endOffset()).isEqualTo(last);
+        assertThat(reopened.append(new Mutation.LikeAdded(1, 3))).isEqualTo(last);
+
+        List<Mutation> replayed = new ArrayList<>();
+        reopened.replay(0, entry -> replayed.add(entry.mutation()));
+        assertThat(replayed).isEqualTo(List.of(new Mutation.LikeAdded(1, 1), new Mutation.LikeAdded(1, 3)));
+    }
+
+    @Test
+    public void testGroupCommitAndTailingReader() throws Exception {
+        MutationJournal journal = new MutationJournal(directory, DataSize.ofKilobytes(16), true);
+        JournalReader reader = journal.reader(journal.endOffset());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < 8; thread++) {
+            long userId = thread;
+            futures.add(executor.submit(() -> {
+                for (long filmId = 0; filmId < 200; filmId++) {
+                    journal.append(new Mutation.LikeAdded(filmId, userId));
+                }
+                return null;
+            }));
+        }
+
+        long[] lastFilm = new long[8];
+        Arrays.fill(lastFilm, -1);
+        for (int i = 0; i < 8 * 200; i++) {
+            JournalEntry entry = reader.poll(Duration.ofSeconds(10));
+            Mutation.LikeAdded like = (Mutation.LikeAdded) entry.mutation();
+
+            assertThat(like.filmId()).isEqualTo(lastFilm[(int) like.userId()] + 1);
+            lastFilm[(int) like.userId()] = like.filmId();
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(reader.next()).isNull();
+        assertThat(journal.getAppendCount()).isEqualTo(8 * 200L);
+        assertThat(journal.getSyncCount() <= journal.getAppendCount()).isTrue();
+        assertThat(reader.poll(Duration.ofMillis(10))).isNull();
+    }
+
+    @Test
+    public void testJournaledStorageRecordsOnlyAppliedChanges() throws IOException {
+        MutationJournal journal = new MutationJournal(directory, DataSize.ofKilobytes(64), false);
+        JournaledUserStorage storage = new JournaledUserStorage(new InMemoryUserStorage(new FriendshipGraph()),
+                journal);
+
+        User first = new User();
+        first.setEmail("first@mail.ru");
+        first.setLogin("first");
+        storage.create(first);
+        User second = new User();
+        second.setEmail("second@mail.ru");
+        second.setLogin("second");
+        storage.create(second);
+        storage.addFriend(first.getId(), second.getId());
+        storage.addFriends(List.of(new Friendship(first.getId(), second.getId()),
+                new Friendship(second.getId(), first.getId()), new Friendship(second.getId(), 100L)));
+        assertThatThrownBy(() -> storage.addFriend(first.getId(), 100L)).isInstanceOf(RuntimeException.class);
+
+        List<Mutation> replayed = new ArrayList<>();
+        journal.replay(0, entry -> replayed.add(entry.mutation()));
+        assertThat(replayed).isEqualTo(List.of(new Mutation.UserCreated(first), new Mutation.UserCreated(second),
+                new Mutation.FriendAdded(first.getId(), second.getId()),
+                new Mutation.FriendAdded(second.getId(), first.getId())));
+    }
+}
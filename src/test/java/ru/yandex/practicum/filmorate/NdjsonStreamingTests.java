@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceData;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class NdjsonStreamingTests {
+    private final FilmService filmService = mock(FilmService.class);
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new FilmController(filmService,
+            new EntityVersions(mock(ReferenceData.class)),
+            new NdjsonWriter(JsonMapper.builder().addModule(new JavaTimeModule()).build()))).build();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFilmsStreamAsOneDocumentPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Film> consumer = invocation.getArgument(0);
+            for (long id = 1; id <= 3; id++) {
+                Film film = new Film();
+                film.setId(id);
+                film.setName("Фильм " + id);
+                consumer.accept(film);
+            }
+            return null;
+        }).when(filmService).streamAll(any(Consumer.class));
+
+        MvcResult started = mvc.perform(get("/films").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length).isEqualTo(3);
+        assertThat(lines[0].startsWith("{\"id\":1,\"name\":\"Фильм 1\"")).isTrue();
+        assertThat(lines[2].startsWith("{\"id\":3,")).isTrue();
+    }
+}
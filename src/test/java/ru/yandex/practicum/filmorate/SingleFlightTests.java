@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate;
+
+import exception.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.service.SingleFlight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class SingleFlightTests {
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(registry, true);
+
+    @Test
+    public void testConcurrentCallsShareOneResult() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<Object>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> singleFlight.execute("film.getById", List.of(1L), () -> {
+                executions.incrementAndGet();
+                awaitQuietly(release);
+                return new Object();
+            })));
+        }
+        while (singleFlight.getCallCount("film.getById") < CALLERS) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        Object first = futures.getFirst().get(10, TimeUnit.SECONDS);
+        for (Future<Object> future : futures) {
+            assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        executor.shutdown();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.getCoalescedCount("film.getById")).isEqualTo(CALLERS - 1L);
+        assertThat(registry.get(SingleFlight.COALESCED_COUNTER).tag("operation", "film.getById").counter().count())
+                .isEqualTo(CALLERS - 1.0);
+
+        Object next = singleFlight.execute("film.getById", List.of(1L), Object::new);
+        assertThat(next).isNotSameAs(first);
+    }
+
+    @Test
+    public void testDifferentKeysAndFailuresAreNotShared() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("film.getById", List.of(1L), () -> {
+            awaitQuietly(release);
+            throw new NotFoundException("Фильм с id = 1 не найден");
+        }));
+        while (singleFlight.getCallCount("film.getById") < 1) {
+            Thread.sleep(1);
+        }
+        Future<Object> follower = executor.submit(() -> singleFlight.execute("film.getById", List.of(1L),
+                Object::new));
+        while (singleFlight.getCoalescedCount("film.getById") < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThat(singleFlight.execute("film.getById", List.of(2L), () -> "other")).isEqualTo("other");
+        release.countDown();
+        executor.shutdown();
+
+        assertThatThrownBy(() -> leader.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> follower.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(NotFoundException.class);
+        assertThat(singleFlight.execute("film.getById", List.of(1L), () -> "retry")).isEqualTo("retry");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}